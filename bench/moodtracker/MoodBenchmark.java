@@ -0,0 +1,227 @@
+package moodtracker;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Microbenchmarks for the repository and the data paths behind the UI, run against
+ * the embedded {@link MappedFileMoodStore} seeded in a temporary directory, so no
+ * MySQL server is needed. Each benchmark is warmed up, then timed per operation;
+ * the report gives throughput, latency percentiles and bytes allocated per operation.
+ *
+ * <pre>
+ * java -cp bin moodtracker.MoodBenchmark [--sizes=1000,10000,100000,1000000] [--warmupMs=1000] [--measureMs=3000]
+ * </pre>
+ *
+ * The project has no build tool to pull in JMH, so this is a small self-contained
+ * harness with the same warmup/measure structure. Run it with {@code -XX:+UseParallelGC}
+ * or similar fixed settings when comparing results between commits.
+ */
+public final class MoodBenchmark {
+    private static final int MAX_SAMPLES = 1 << 21;
+    private static final String[] GRATITUDE_WORDS = {"family", "coffee", "sunshine", "friends", "music", "rest",
+            "work", "walk", "dinner", "sister", "book", "garden", "rain", "health", "weekend"};
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Consumes benchmark results so the JIT cannot discard the work
+    private static volatile int sink;
+
+    private MoodBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = {1_000, 10_000, 100_000, 1_000_000};
+        long warmupMs = 1_000;
+        long measureMs = 3_000;
+        for (String arg : args) {
+            if (arg.startsWith("--sizes=")) {
+                sizes = Arrays.stream(arg.substring("--sizes=".length()).split(","))
+                        .mapToInt(Integer::parseInt).toArray();
+            } else if (arg.startsWith("--warmupMs=")) {
+                warmupMs = Long.parseLong(arg.substring("--warmupMs=".length()));
+            } else if (arg.startsWith("--measureMs=")) {
+                measureMs = Long.parseLong(arg.substring("--measureMs=".length()));
+            } else {
+                System.err.println("Unknown argument: " + arg);
+                System.exit(2);
+            }
+        }
+
+        System.out.println(Result.header());
+        Result mapping = measure("mapRow", 0, warmupMs, measureMs, mapRowOperation());
+        System.out.println(mapping);
+
+        for (int size : sizes) {
+            Path dir = Files.createTempDirectory("mood-bench");
+            Path file = dir.resolve("moods.db");
+            try (MappedFileMoodStore store = new MappedFileMoodStore(file, false, 0)) {
+                MoodRepository repository = new MoodRepository(store);
+                LocalDate start = LocalDate.of(2000, 1, 1);
+                seed(store, start, size);
+                Random random = new Random(42);
+
+                System.out.println(measure("saveOrUpdateMoodEntry", size, warmupMs, measureMs, i ->
+                        repository.saveOrUpdateMoodEntry(start.plusDays(random.nextInt(size)),
+                                MoodType.fromOrdinal(i % MoodType.count()).getDisplayName(),
+                                gratitude(random), 1 + i % 5)));
+                System.out.println(measure("getMoodsByDate", size, warmupMs, measureMs, i ->
+                        sink += repository.getMoodsByDate(start.plusDays(random.nextInt(size))).size()));
+                System.out.println(measure("getMoodsBetween(month)", size, warmupMs, measureMs, i -> {
+                    LocalDate from = start.plusDays(random.nextInt(size));
+                    sink += repository.getMoodsBetween(from, from.plusDays(30)).size();
+                }));
+                System.out.println(measure("getEntriesAfter(page)", size, warmupMs, measureMs, i ->
+                        sink += repository.getEntriesAfter(start.plusDays(random.nextInt(size)),
+                                LazyMoodTableModel.PAGE_SIZE).size()));
+                System.out.println(measure("getAllEntries", size, warmupMs, measureMs, i ->
+                        sink += repository.getAllEntries().size()));
+                System.out.println(measure("getDatesWithEntries", size, warmupMs, measureMs, i ->
+                        sink += repository.getDatesWithEntries().size()));
+                System.out.println(measure("analyze(full)", size, warmupMs, measureMs, i ->
+                        sink += new MoodAnalytics(ForkJoinPool.commonPool()).analyze(repository).getEntryCount()));
+                // The store's own analytics, which the repository's writes mark as changed
+                MoodAnalytics analytics = MoodAnalytics.of(repository);
+                System.out.println(measure("analyze(one month changed)", size, warmupMs, measureMs, i -> {
+                    repository.saveOrUpdateMoodEntry(start.plusDays(random.nextInt(size)),
+                            MoodType.fromOrdinal(i % MoodType.count()).getDisplayName(), gratitude(random), 1 + i % 5);
+                    sink += analytics.analyze(repository).getEntryCount();
+                }));
+            } finally {
+                Files.deleteIfExists(file);
+                Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".compact"));
+                Files.deleteIfExists(dir);
+            }
+        }
+        if (MoodStores.isDefaultOpen()) {
+            // Then some of the numbers above came from the configured server, not the embedded store
+            System.err.println("The default mood store was opened during the run; results are not isolated");
+            System.exit(1);
+        }
+    }
+
+    private static void seed(MoodStore store, LocalDate start, int size) throws Exception {
+        Random random = new Random(size);
+        for (int i = 0; i < size; i++) {
+            store.upsertMoodEntry(start.plusDays(i), MoodType.fromOrdinal(random.nextInt(MoodType.count())).getDisplayName(),
+                    gratitude(random), 1 + random.nextInt(5));
+        }
+    }
+
+    private static String gratitude(Random random) {
+        StringBuilder text = new StringBuilder("Grateful for");
+        int words = 5 + random.nextInt(30);
+        for (int i = 0; i < words; i++) {
+            text.append(' ').append(GRATITUDE_WORDS[random.nextInt(GRATITUDE_WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    // A ResultSet stand-in returning one fixed row, to time JdbcMoodStore.mapRow without a driver
+    private static Operation mapRowOperation() {
+        java.sql.Date date = java.sql.Date.valueOf(LocalDate.of(2024, 5, 17));
+        String gratitude = gratitude(new Random(1));
+        ResultSet row = (ResultSet) Proxy.newProxyInstance(MoodBenchmark.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, methodArgs) -> {
+                    switch (method.getName() + ":" + methodArgs[0]) {
+                        case "getInt:id":
+                            return 7;
+                        case "getInt:rating":
+                            return 4;
+                        case "getString:mood":
+                            return "Calm";
+                        case "getString:gratitude":
+                            return gratitude;
+                        case "getDate:entryDate":
+                            return date;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        return i -> sink += JdbcMoodStore.mapRow(row).getRating();
+    }
+
+    private static Result measure(String name, int size, long warmupMs, long measureMs, Operation operation)
+            throws Exception {
+        long warmupEnd = System.nanoTime() + warmupMs * 1_000_000;
+        int i = 0;
+        while (System.nanoTime() < warmupEnd) {
+            operation.run(i++);
+        }
+
+        long thread = Thread.currentThread().getId();
+        long[] samples = new long[MAX_SAMPLES];
+        int count = 0;
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        long end = start + measureMs * 1_000_000;
+        long now = start;
+        while (now < end) {
+            long before = now;
+            operation.run(i++);
+            now = System.nanoTime();
+            if (count < MAX_SAMPLES) {
+                samples[count] = now - before;
+            }
+            count++;
+        }
+        long elapsed = now - start;
+        long allocated = THREADS.getThreadAllocatedBytes(thread) - allocatedBefore;
+
+        int recorded = Math.min(count, MAX_SAMPLES);
+        long[] sorted = Arrays.copyOf(samples, recorded);
+        Arrays.sort(sorted);
+        return new Result(name, size, count, elapsed, sorted, allocated);
+    }
+
+    @FunctionalInterface
+    private interface Operation {
+        void run(int iteration) throws Exception;
+    }
+
+    private static final class Result {
+        private final String name;
+        private final int size;
+        private final long operations;
+        private final long elapsedNanos;
+        private final long[] sortedSamples;
+        private final long allocatedBytes;
+
+        Result(String name, int size, long operations, long elapsedNanos, long[] sortedSamples, long allocatedBytes) {
+            this.name = name;
+            this.size = size;
+            this.operations = operations;
+            this.elapsedNanos = elapsedNanos;
+            this.sortedSamples = sortedSamples;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        static String header() {
+            return String.format("%-26s %9s %12s %9s %9s %9s %9s %10s %10s", "benchmark", "entries", "ops/s",
+                    "p50 us", "p90 us", "p99 us", "p99.9 us", "max us", "B/op");
+        }
+
+        private double percentileMicros(double percentile) {
+            if (sortedSamples.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(sortedSamples.length - 1, Math.ceil(percentile * sortedSamples.length) - 1);
+            return sortedSamples[Math.max(0, index)] / 1_000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-26s %9d %12.0f %9.2f %9.2f %9.2f %9.2f %10.2f %10d",
+                    name, size, operations * 1e9 / elapsedNanos,
+                    percentileMicros(0.50), percentileMicros(0.90), percentileMicros(0.99), percentileMicros(0.999),
+                    percentileMicros(1.0), operations == 0 ? 0 : allocatedBytes / operations);
+        }
+    }
+}
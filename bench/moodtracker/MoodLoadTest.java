@@ -0,0 +1,357 @@
+package moodtracker;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Multi-client load and soak test for {@link MoodRepository}: N simulated users, each
+ * on its own thread, issue a configurable mix of reads and writes back to back for the
+ * length of the run. Every few seconds a line reports throughput and tail latency for
+ * the interval; the run ends with per-operation totals and a consistency check.
+ *
+ * <pre>
+ * java -cp bin:... moodtracker.MoodLoadTest [--users=32] [--durationS=60] [--reportS=10] [--writeRatio=0.2]
+ *         [--days=3650] [--thinkMs=0] [--store=embedded|default] [--writeBehind]
+ * </pre>
+ *
+ * {@code --store=embedded} (the default) runs against a fresh {@link MappedFileMoodStore}
+ * in a temporary directory, optionally behind a {@link WriteBehindMoodStore};
+ * {@code --store=default} uses whatever {@link MoodStores#getDefault()} is configured
+ * for, e.g. MySQL through the connection pool.
+ *
+ * <p>Writes are mostly upserts and deletes of random seeded days. A share of them are
+ * {@code saveMoodEntry} calls on fresh days, with several users racing for each day;
+ * exactly one of them may succeed, so a day saved twice means the check-then-insert let a
+ * duplicate through. At the end every entry is read back and any date stored more than
+ * once is reported as a duplicate row.
+ */
+public final class MoodLoadTest {
+    // Users racing for each fresh day in the save workload
+    private static final int SAVE_RACERS = 4;
+
+    private final MoodRepository repository;
+    private final int days;
+    private final LocalDate start = LocalDate.of(2000, 1, 1);
+    private final LocalDate saveStart;
+    private final AtomicInteger saveTickets = new AtomicInteger();
+    private final Map<LocalDate, AtomicInteger> savesByDate = new ConcurrentHashMap<>();
+    private final Map<String, OperationStats> operations = new LinkedHashMap<>();
+    private final LongAdder conflicts = new LongAdder();
+    private final double writeRatio;
+    private final long thinkMs;
+    private volatile boolean stopped;
+
+    private MoodLoadTest(MoodRepository repository, int days, double writeRatio, long thinkMs) {
+        this.repository = repository;
+        this.days = days;
+        this.saveStart = start.plusDays(days + 1);
+        this.writeRatio = writeRatio;
+        this.thinkMs = thinkMs;
+        for (String name : new String[]{"getMoodsByDate", "getMoodsBetween(month)", "getEntriesAfter(page)",
+                "upsertMoodEntry", "deleteMoodEntryByDate", "saveMoodEntry(race)"}) {
+            operations.put(name, new OperationStats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int users = 32;
+        long durationS = 60;
+        long reportS = 10;
+        double writeRatio = 0.2;
+        int days = 3650;
+        long thinkMs = 0;
+        String storeName = "embedded";
+        boolean writeBehind = false;
+        for (String arg : args) {
+            if (arg.startsWith("--users=")) {
+                users = Integer.parseInt(arg.substring("--users=".length()));
+            } else if (arg.startsWith("--durationS=")) {
+                durationS = Long.parseLong(arg.substring("--durationS=".length()));
+            } else if (arg.startsWith("--reportS=")) {
+                reportS = Long.parseLong(arg.substring("--reportS=".length()));
+            } else if (arg.startsWith("--writeRatio=")) {
+                writeRatio = Double.parseDouble(arg.substring("--writeRatio=".length()));
+            } else if (arg.startsWith("--days=")) {
+                days = Integer.parseInt(arg.substring("--days=".length()));
+            } else if (arg.startsWith("--thinkMs=")) {
+                thinkMs = Long.parseLong(arg.substring("--thinkMs=".length()));
+            } else if (arg.startsWith("--store=")) {
+                storeName = arg.substring("--store=".length());
+            } else if ("--writeBehind".equals(arg)) {
+                writeBehind = true;
+            } else {
+                System.err.println("Unknown argument: " + arg);
+                System.exit(2);
+            }
+        }
+
+        Path dir = null;
+        MoodStore store;
+        if ("default".equals(storeName)) {
+            store = MoodStores.getDefault();
+        } else {
+            dir = Files.createTempDirectory("mood-load");
+            store = new MappedFileMoodStore(dir.resolve("moods.db"), false, 0);
+            if (writeBehind) {
+                store = new WriteBehindMoodStore(store);
+            }
+        }
+        try {
+            MoodLoadTest test = new MoodLoadTest(new MoodRepository(store), days, writeRatio, thinkMs);
+            test.seed(store);
+            System.out.printf("%d users, %.0f%% writes, %d seeded days, store %s%s, %d s%n", users, writeRatio * 100,
+                    days, storeName, writeBehind ? " + write-behind" : "", durationS);
+            test.run(users, durationS, reportS);
+            boolean consistent = test.verify(store);
+            if (!consistent) {
+                System.exit(1);
+            }
+        } finally {
+            if (dir != null) {
+                store.close();
+                Files.deleteIfExists(dir.resolve("moods.db"));
+                Files.deleteIfExists(dir.resolve("moods.db.compact"));
+                Files.deleteIfExists(dir);
+            }
+        }
+    }
+
+    private void seed(MoodStore store) throws SQLException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<MoodWrite> batch = new ArrayList<>();
+        for (int i = 0; i < days; i++) {
+            batch.add(MoodWrite.upsert(start.plusDays(i), randomMood(random), "Seeded entry " + i, 1 + random.nextInt(5)));
+            if (batch.size() == 1000) {
+                store.applyBatch(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            store.applyBatch(batch);
+        }
+    }
+
+    private void run(int users, long durationS, long reportS) throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            Thread thread = new Thread(this::simulateUser, "load-user-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+        }
+        System.out.println(intervalHeader());
+        long begin = System.nanoTime();
+        long end = begin + TimeUnit.SECONDS.toNanos(durationS);
+        threads.forEach(Thread::start);
+        Interval previous = snapshot(begin);
+        while (System.nanoTime() < end) {
+            TimeUnit.NANOSECONDS.sleep(Math.min(TimeUnit.SECONDS.toNanos(reportS), end - System.nanoTime()));
+            Interval current = snapshot(System.nanoTime());
+            System.out.println(current.describeSince(previous, begin));
+            previous = current;
+        }
+        stopped = true;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        System.out.println();
+        System.out.printf("%-24s %9s %10s %7s %9s %9s %9s %9s%n", "operation", "count", "ops/s", "errors",
+                "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<String, OperationStats> entry : operations.entrySet()) {
+            LatencyHistogram latency = entry.getValue().latency;
+            System.out.printf("%-24s %9d %10.0f %7d %9.3f %9.3f %9.3f %9.3f%n", entry.getKey(), latency.getCount(),
+                    latency.getCount() * 1e9 / elapsed, entry.getValue().errors.sum(),
+                    latency.getPercentileMillis(50), latency.getPercentileMillis(99),
+                    latency.getPercentileMillis(99.9), latency.getMaxMillis());
+        }
+        if (Metrics.getLatency("db.connection.acquire") != null) {
+            System.out.println("pool: " + DatabaseConnection.getPoolStats());
+        }
+    }
+
+    private void simulateUser() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (!stopped) {
+            double roll = random.nextDouble();
+            if (roll < writeRatio) {
+                write(random, roll / writeRatio);
+            } else {
+                read(random, (roll - writeRatio) / (1 - writeRatio));
+            }
+            if (thinkMs > 0) {
+                try {
+                    Thread.sleep(thinkMs);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Reads: 60% single day, 25% one month, 15% one table page
+    private void read(ThreadLocalRandom random, double roll) {
+        LocalDate date = start.plusDays(random.nextInt(days));
+        if (roll < 0.60) {
+            timed("getMoodsByDate", () -> repository.getMoodsByDate(date));
+        } else if (roll < 0.85) {
+            timed("getMoodsBetween(month)", () -> repository.getMoodsBetween(date, date.plusDays(30)));
+        } else {
+            timed("getEntriesAfter(page)", () -> repository.getEntriesAfter(date, LazyMoodTableModel.PAGE_SIZE));
+        }
+    }
+
+    // Writes: 70% upsert, 10% delete, 20% racing first saves of fresh days
+    private void write(ThreadLocalRandom random, double roll) {
+        LocalDate date = start.plusDays(random.nextInt(days));
+        if (roll < 0.70) {
+            timed("upsertMoodEntry", () -> {
+                repository.upsertMoodEntry(date, randomMood(random), "Load test entry", 1 + random.nextInt(5));
+                return null;
+            });
+        } else if (roll < 0.80) {
+            timed("deleteMoodEntryByDate", () -> {
+                repository.deleteMoodEntryByDate(date);
+                return null;
+            });
+        } else {
+            LocalDate fresh = saveStart.plusDays(saveTickets.getAndIncrement() / SAVE_RACERS);
+            timed("saveMoodEntry(race)", () -> {
+                repository.saveMoodEntry(fresh, randomMood(random), "Racing save", 1 + random.nextInt(5));
+                savesByDate.computeIfAbsent(fresh, d -> new AtomicInteger()).incrementAndGet();
+                return null;
+            });
+        }
+    }
+
+    private void timed(String operation, AsyncMoodRepository.SqlCall<?> call) {
+        OperationStats stats = operations.get(operation);
+        long begin = System.nanoTime();
+        try {
+            call.call();
+        } catch (SQLException e) {
+            if (e.getMessage() != null && e.getMessage().contains("already exists")) {
+                conflicts.increment(); // The losing side of a save race, as designed
+            } else {
+                stats.recordError(e);
+            }
+        } catch (RuntimeException e) {
+            stats.recordError(e);
+        } finally {
+            long nanos = System.nanoTime() - begin;
+            stats.latency.record(nanos);
+            stats.interval.record(nanos);
+        }
+    }
+
+    private boolean verify(MoodStore store) throws SQLException {
+        if (store instanceof WriteBehindMoodStore) {
+            ((WriteBehindMoodStore) store).flush();
+        }
+        Set<LocalDate> seen = new HashSet<>();
+        int duplicateRows = 0;
+        for (Mood mood : store.getAllEntries()) {
+            if (!seen.add(mood.getDate())) {
+                duplicateRows++;
+            }
+        }
+        int doubleSaves = 0;
+        for (AtomicInteger saves : savesByDate.values()) {
+            if (saves.get() > 1) {
+                doubleSaves++;
+            }
+        }
+        long errors = 0;
+        for (OperationStats stats : operations.values()) {
+            errors += stats.errors.sum();
+        }
+        System.out.println();
+        System.out.printf("errors %d, save races lost %d, days saved twice %d, duplicate rows %d (%d rows, %d days)%n",
+                errors, conflicts.sum(), doubleSaves, duplicateRows, seen.size() + duplicateRows, seen.size());
+        for (OperationStats stats : operations.values()) {
+            if (stats.firstError != null) {
+                System.out.println("first error: " + stats.firstError);
+            }
+        }
+        return doubleSaves == 0 && duplicateRows == 0;
+    }
+
+    private static String randomMood(ThreadLocalRandom random) {
+        return MoodType.fromOrdinal(random.nextInt(MoodType.count())).getDisplayName();
+    }
+
+    private static String intervalHeader() {
+        return String.format("%8s %10s %9s %9s %9s %7s %11s", "time s", "ops/s", "p50 ms", "p99 ms", "p99.9 ms",
+                "errors", "races lost");
+    }
+
+    // Cumulative counters at one instant; two of them give an interval's throughput and errors
+    private Interval snapshot(long at) {
+        long count = 0;
+        long errors = 0;
+        LatencyHistogram merged = new LatencyHistogram();
+        for (OperationStats stats : operations.values()) {
+            count += stats.latency.getCount();
+            errors += stats.errors.sum();
+            merged.add(stats.swapInterval());
+        }
+        return new Interval(at, count, errors, conflicts.sum(), merged);
+    }
+
+    private static final class OperationStats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private volatile LatencyHistogram interval = new LatencyHistogram();
+        private volatile String firstError;
+
+        void recordError(Exception e) {
+            errors.increment();
+            if (firstError == null) {
+                firstError = e.toString();
+            }
+        }
+
+        LatencyHistogram swapInterval() {
+            LatencyHistogram finished = interval;
+            interval = new LatencyHistogram();
+            return finished;
+        }
+    }
+
+    private static final class Interval {
+        private final long at;
+        private final long count;
+        private final long errors;
+        private final long conflicts;
+        private final LatencyHistogram latency;
+
+        Interval(long at, long count, long errors, long conflicts, LatencyHistogram latency) {
+            this.at = at;
+            this.count = count;
+            this.errors = errors;
+            this.conflicts = conflicts;
+            this.latency = latency;
+        }
+
+        String describeSince(Interval previous, long begin) {
+            double seconds = (at - previous.at) / 1e9;
+            return String.format("%8.0f %10.0f %9.3f %9.3f %9.3f %7d %11d", (at - begin) / 1e9,
+                    (count - previous.count) / seconds, latency.getPercentileMillis(50),
+                    latency.getPercentileMillis(99), latency.getPercentileMillis(99.9), errors - previous.errors,
+                    conflicts - previous.conflicts);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package moodtracker;
+
+import javax.swing.SwingUtilities;
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking view of {@link MoodRepository}. Every call runs on a background
+ * executor and completes a {@link CompletableFuture}; UI code continues with
+ * {@code whenCompleteAsync(..., AsyncMoodRepository.EDT)} so the Swing thread never
+ * waits on the database.
+ */
+public class AsyncMoodRepository {
+    /** Runs continuations on the Swing event dispatch thread. */
+    public static final Executor EDT = SwingUtilities::invokeLater;
+
+    private static final ExecutorService EXECUTOR = newBlockingExecutor("mood-db");
+
+    private final MoodRepository repository;
+
+    public AsyncMoodRepository() {
+        this(new MoodRepository());
+    }
+
+    public AsyncMoodRepository(MoodRepository repository) {
+        this.repository = repository;
+    }
+
+    public CompletableFuture<Void> saveMoodEntry(LocalDate date, String mood, String gratitudeText, int rating) {
+        return run(() -> {
+            repository.saveMoodEntry(date, mood, gratitudeText, rating);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> saveOrUpdateMoodEntry(LocalDate date, String mood, String gratitudeText, int rating) {
+        return run(() -> {
+            repository.saveOrUpdateMoodEntry(date, mood, gratitudeText, rating);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> deleteMoodEntryByDate(LocalDate date) {
+        return run(() -> {
+            repository.deleteMoodEntryByDate(date);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Mood> getMoodEntryForToday() {
+        return run(repository::getMoodEntryForToday);
+    }
+
+    public CompletableFuture<List<Mood>> getAllEntries() {
+        return run(repository::getAllEntries);
+    }
+
+    public CompletableFuture<List<Mood>> getMoodsByDate(LocalDate date) {
+        return run(() -> repository.getMoodsByDate(date));
+    }
+
+    public CompletableFuture<List<Mood>> getMoodsBetween(LocalDate start, LocalDate end) {
+        return run(() -> repository.getMoodsBetween(start, end));
+    }
+
+    /**
+     * Like {@link #getMoodsBetween(LocalDate, LocalDate)}, but abandoned, and its query
+     * cancelled, once the token is.
+     */
+    public CompletableFuture<List<Mood>> getMoodsBetween(LocalDate start, LocalDate end, CancellationToken token) {
+        return run(token, () -> repository.getMoodsBetween(start, end));
+    }
+
+    // Null when there are no entries yet
+    public CompletableFuture<LocalDate> getFirstEntryDate() {
+        return run(() -> {
+            List<Mood> first = repository.getEntriesAfter(null, 1);
+            return first.isEmpty() ? null : first.get(0).getDate();
+        });
+    }
+
+    public CompletableFuture<List<LocalDate>> getDatesWithEntries() {
+        return run(repository::getDatesWithEntries);
+    }
+
+    public CompletableFuture<MoodStatistics> getStatistics(LocalDate from, LocalDate to) {
+        return run(() -> repository.getStatistics(from, to));
+    }
+
+    public CompletableFuture<List<MoodStatistics>> getStatisticsBy(MoodStatistics.Period period, LocalDate from, LocalDate to) {
+        return run(() -> repository.getStatisticsBy(period, from, to));
+    }
+
+    public CompletableFuture<MoodInsights> getInsights() {
+        return run(repository::getInsights);
+    }
+
+    /**
+     * Fetches the full gratitude text of a summary entry in the background.
+     */
+    public CompletableFuture<String> loadGratitude(Mood mood) {
+        return run(mood::loadGratitude);
+    }
+
+    public CompletableFuture<String> loadGratitude(Mood mood, CancellationToken token) {
+        return run(token, mood::loadGratitude);
+    }
+
+    /**
+     * Runs an arbitrary repository call on the database executor.
+     */
+    public static <T> CompletableFuture<T> run(SqlCall<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        EXECUTOR.execute(() -> {
+            try {
+                future.complete(call.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Runs a repository call that the caller may give up on: it fails with a
+     * {@link java.util.concurrent.CancellationException} instead of completing once the
+     * token is cancelled, and a query still running at that point is cancelled too.
+     */
+    public static <T> CompletableFuture<T> run(CancellationToken token, SqlCall<T> call) {
+        return run(() -> token.call(call));
+    }
+
+    /**
+     * Strips the {@link CompletionException} wrapper a dependent stage adds, so error
+     * dialogs can show the original {@link SQLException} message.
+     */
+    public static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    @FunctionalInterface
+    public interface SqlCall<T> {
+        T call() throws SQLException;
+    }
+
+    // JDBC calls block, which is exactly what virtual threads are cheap for. The project still
+    // compiles at Java 11 level, so the JDK 21 factory is looked up reflectively with a fallback.
+    static ExecutorService newBlockingExecutor(String threadName) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, threadName + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
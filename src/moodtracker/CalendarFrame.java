@@ -1,24 +1,38 @@
 package moodtracker;
 
 import com.toedter.calendar.JCalendar;
+import com.toedter.calendar.JDayChooser;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.sql.SQLException;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.ZoneId;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class CalendarFrame extends JFrame {
     private final JCalendar calendar = new JCalendar();
-    private MoodRepository moodRepository;
+    private AsyncMoodRepository moodRepository;
+    private final MoodMonthCache monthCache = MoodMonthCache.getShared();
     private final JTextArea infoTextArea;
+    private final JButton deleteButton;
+    private LocalDate displayedDate;
+    // Lookups wait until the selection has stopped moving for this long
+    private final Timer lookupTimer = new Timer(AppConfig.getInt("moodtracker.calendar.lookupDelayMs", 150), e -> lookUpDisplayedDate());
+    private CancellationToken lookup = new CancellationToken();
 
     public CalendarFrame() {
-        this.moodRepository = new MoodRepository();  // Initialize the repository
+        this.moodRepository = new AsyncMoodRepository();  // Initialize the repository
+        // Days are coloured from the index, so repaint once it has loaded
+        MoodIndex.getShared().ensureLoaded(new MoodRepository())
+                .thenRunAsync(this::redrawDays, AsyncMoodRepository.EDT);
 
         // Frame settings
         setTitle("Mood Calendar");
@@ -26,10 +40,29 @@ public class CalendarFrame extends JFrame {
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         setLocationRelativeTo(null);
         setLayout(new BorderLayout());
+        lookupTimer.setRepeats(false);
 
-        // Calendar Component
-        calendar.addPropertyChangeListener("calendar", e -> updateTextArea());
-        add(calendar, BorderLayout.WEST);
+        // Calendar Component, with logged days coloured by mood straight from the index
+        for (MoodType type : MoodType.values()) {
+            calendar.getDayChooser().addDateEvaluator(new MoodDayEvaluator(type, () -> displayedDate));
+        }
+        calendar.addPropertyChangeListener("calendar", e -> {
+            updateTextArea();
+            redrawDays();
+        });
+        JPanel calendarPanel = new JPanel(new BorderLayout());
+        calendarPanel.add(calendar, BorderLayout.CENTER);
+        calendarPanel.add(createLegend(), BorderLayout.SOUTH);
+        add(calendarPanel, BorderLayout.WEST);
+        MoodChangeBus.Subscription changes = MoodChangeBus.getShared().subscribeOnEdt(this::applyChanges);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                changes.cancel();
+                lookupTimer.stop();
+                lookup.cancel();
+            }
+        });
 
         // Panel for the JTextArea
         JPanel labelPanel = new JPanel();
@@ -48,11 +81,51 @@ public class CalendarFrame extends JFrame {
         add(labelPanel, BorderLayout.CENTER);
 
         // Delete Button
-        JButton deleteButton = new JButton("Delete Selected Entry");
+        deleteButton = new JButton("Delete Selected Entry");
         deleteButton.addActionListener(new DeleteActionListener());
         add(deleteButton, BorderLayout.SOUTH);
 
         setVisible(true);
+        updateTextArea();
+        redrawDays();
+    }
+
+    private JPanel createLegend() {
+        JPanel legend = new JPanel(new GridLayout(0, 4, 4, 4));
+        legend.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+        for (MoodType type : MoodType.values()) {
+            JLabel label = new JLabel(type.getDisplayName(), SwingConstants.CENTER);
+            label.setOpaque(true);
+            label.setBackground(type.getColor());
+            legend.add(label);
+        }
+        return legend;
+    }
+
+    // Writes from any window: recolour the month and refresh the text if it shows a changed day
+    private void applyChanges(List<MoodChangeEvent> events) {
+        redrawDays();
+        for (MoodChangeEvent event : events) {
+            if (event.getType() == MoodChangeEvent.Type.IMPORTED) {
+                updateTextArea();
+            } else if (event.getDate().equals(displayedDate)) {
+                MoodIndex index = MoodIndex.getShared();
+                if (!index.isLoaded()) {
+                    updateTextArea();
+                } else if (!index.contains(displayedDate.toEpochDay())) {
+                    resetTextArea();
+                } else if (event.getMood() != null) {
+                    showMood(event.getMood());
+                }
+            }
+        }
+    }
+
+    // drawDays() is protected; re-applying a colour is the public way to make the chooser
+    // re-run its date evaluators for the visible month
+    private void redrawDays() {
+        JDayChooser dayChooser = calendar.getDayChooser();
+        dayChooser.setSundayForeground(dayChooser.getSundayForeground());
     }
 
     private class DeleteActionListener implements ActionListener {
@@ -71,47 +144,106 @@ public class CalendarFrame extends JFrame {
                     JOptionPane.YES_NO_OPTION);
 
             if (confirmation == JOptionPane.YES_OPTION) {
-                try {
-                    // Delete mood entry by the selected date
-                    moodRepository.deleteMoodEntryByDate(localDate);
-                    JOptionPane.showMessageDialog(CalendarFrame.this, "Mood entry for " + localDate + " has been deleted.", "Success", JOptionPane.INFORMATION_MESSAGE);
-                } catch (SQLException ex) {
-                    JOptionPane.showMessageDialog(CalendarFrame.this, "Error deleting mood entry: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                }
+                // Delete mood entry by the selected date
+                deleteButton.setEnabled(false);
+                moodRepository.deleteMoodEntryByDate(localDate).whenCompleteAsync((ignored, error) -> {
+                    deleteButton.setEnabled(true);
+                    if (error == null) {
+                        // The change bus has already cleared the text and the day's colour
+                        JOptionPane.showMessageDialog(CalendarFrame.this, "Mood entry for " + localDate + " has been deleted.", "Success", JOptionPane.INFORMATION_MESSAGE);
+                    } else {
+                        JOptionPane.showMessageDialog(CalendarFrame.this, "Error deleting mood entry: " + AsyncMoodRepository.unwrap(error).getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                }, AsyncMoodRepository.EDT);
             }
         }
     }
 
     private void updateTextArea() {
+        Metrics.UiSpan span = Metrics.startUi("CalendarFrame.updateTextArea");
+        try {
+            showSelectedDate();
+        } finally {
+            span.close();
+        }
+    }
+
+    // Holding an arrow key or paging through months changes the selection many times a second, so
+    // only answers already in memory are shown at once; anything else waits for the selection to
+    // settle, and the lookup for a day the user has moved past is cancelled, query included
+    private void showSelectedDate() {
         // Get the selected date from the calendar
         Date selectedDate = calendar.getDate();
         LocalDate localDate = selectedDate.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+        displayedDate = localDate;
+        lookup.cancel();
+        lookupTimer.stop();
 
-        try {
-            // Fetch moods for the selected date
-            List<Mood> moods = moodRepository.getMoodsByDate(localDate);
-
-            if (!moods.isEmpty()) {
-                Mood mood = moods.get(0); // Assuming only one entry per day
-
-                // Combine mood, gratitude, and rating into a single text
-                StringBuilder text = new StringBuilder();
-                text.append("Mood: ").append(mood.getMood()).append("\n");
-                text.append("Rating: ").append(getStars(mood.getRating())).append("\n");
-                text.append("Gratitude: ").append("\n").append(mood.getGratitude());
+        MoodIndex index = MoodIndex.getShared();
+        if (index.isLoaded() && !index.contains(localDate.toEpochDay())) {
+            resetTextArea(); // Known empty day, no need to wait for the month
+            return;
+        }
+        Map<LocalDate, Mood> monthMoods = monthCache.getIfLoaded(YearMonth.from(localDate));
+        if (monthMoods != null) {
+            showMood(monthMoods.get(localDate));
+            return;
+        }
+        infoTextArea.setText("Loading...");
+        lookupTimer.restart();
+    }
 
+    private void lookUpDisplayedDate() {
+        LocalDate localDate = displayedDate;
+        CancellationToken token = new CancellationToken();
+        lookup = token;
 
-                // Update the text area
-                infoTextArea.setText(text.toString());
+        // The visible month and its neighbours are loaded once; day clicks are then served from memory
+        YearMonth month = YearMonth.from(localDate);
+        CompletableFuture<Mood> mood = monthCache.getMonth(month, token).thenCompose(monthMoods -> {
+            Mood found = monthMoods.get(localDate);
+            if (found == null || found.isGratitudeLoaded()) {
+                return CompletableFuture.completedFuture(found);
+            }
+            // Month summaries carry no gratitude body; fetch this day's text on demand
+            return moodRepository.loadGratitude(found, token).handle((gratitude, error) -> found);
+        });
+        monthCache.prefetchNeighbours(month);
+        mood.whenCompleteAsync((found, error) -> {
+            if (token.isCancelled() || !localDate.equals(displayedDate)) {
+                return; // The user has already moved on to another day
+            }
+            if (error != null) {
+                JOptionPane.showMessageDialog(this, "Error retrieving mood entries: " + AsyncMoodRepository.unwrap(error).getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                resetTextArea();
+            } else if (found != null && !found.isGratitudeLoaded()) {
+                infoTextArea.setText(describe(found, "(could not be loaded)"));
             } else {
-                resetTextArea(); // If no mood data for the day
+                showMood(found);
             }
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error retrieving mood entries: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            resetTextArea();
+        }, AsyncMoodRepository.EDT);
+    }
+
+    private void showMood(Mood mood) {
+        if (mood != null) {
+            infoTextArea.setText(describe(mood, mood.isGratitudeLoaded() ? mood.getGratitude() : "Loading..."));
+            if (!mood.isGratitudeLoaded() && mood.getDate().equals(displayedDate)) {
+                lookupTimer.restart(); // The month is cached but this day's text is not yet
+            }
+        } else {
+            resetTextArea(); // If no mood data for the day
         }
     }
 
+    private String describe(Mood mood, String gratitude) {
+        // Combine mood, gratitude, and rating into a single text
+        StringBuilder text = new StringBuilder();
+        text.append("Mood: ").append(mood.getMood()).append("\n");
+        text.append("Rating: ").append(getStars(mood.getRating())).append("\n");
+        text.append("Gratitude: ").append("\n").append(gratitude);
+        return text.toString();
+    }
+
     private void resetTextArea() {
         infoTextArea.setText("No mood entry available for this day.");
     }
@@ -0,0 +1,123 @@
+package moodtracker;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Lets the caller of a background lookup give it up once the answer is no longer
+ * wanted. {@link AsyncMoodRepository#run(CancellationToken, AsyncMoodRepository.SqlCall)}
+ * binds the token to the worker thread for the length of the call, and
+ * {@link JdbcMoodStore} registers each query it runs with the bound token, so
+ * {@link #cancel()} also stops a query the server is already executing
+ * ({@link Statement#cancel()}). A cancelled call fails with a {@link CancellationException}
+ * and never delivers a result.
+ */
+public final class CancellationToken {
+    private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+
+    private volatile boolean cancelled;
+    // Guarded by this
+    private Statement running;
+    private List<Runnable> listeners = new ArrayList<>();
+
+    /**
+     * Cancels the work started with this token. Safe to call from any thread, and more
+     * than once.
+     */
+    public void cancel() {
+        Statement statement;
+        List<Runnable> toNotify;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            statement = running;
+            toNotify = listeners;
+            listeners = null;
+        }
+        if (statement != null) {
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                // The query just runs to the end; its result is dropped either way
+            }
+        }
+        for (Runnable listener : toNotify) {
+            listener.run();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Runs the action when the token is cancelled, or at once if it already is.
+     */
+    public void onCancel(Runnable action) {
+        synchronized (this) {
+            if (!cancelled) {
+                listeners.add(action);
+                return;
+            }
+        }
+        action.run();
+    }
+
+    <T> T call(AsyncMoodRepository.SqlCall<T> call) throws SQLException {
+        throwIfCancelled();
+        CancellationToken outer = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            T result = call.call();
+            throwIfCancelled();
+            return result;
+        } catch (SQLException e) {
+            if (cancelled) {
+                // Most likely the interrupted query itself; report it as the cancellation it was
+                CancellationException cancellation = new CancellationException("Lookup cancelled");
+                cancellation.initCause(e);
+                throw cancellation;
+            }
+            throw e;
+        } finally {
+            if (outer == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(outer);
+            }
+        }
+    }
+
+    /**
+     * Runs a query on the statement so that cancelling the token bound to this thread,
+     * if any, cancels it on the server.
+     */
+    static <T> T execute(Statement statement, AsyncMoodRepository.SqlCall<T> query) throws SQLException {
+        CancellationToken token = CURRENT.get();
+        if (token == null) {
+            return query.call();
+        }
+        synchronized (token) {
+            token.throwIfCancelled();
+            token.running = statement;
+        }
+        try {
+            return query.call();
+        } finally {
+            synchronized (token) {
+                token.running = null;
+            }
+        }
+    }
+
+    private void throwIfCancelled() {
+        if (cancelled) {
+            throw new CancellationException("Lookup cancelled");
+        }
+    }
+}
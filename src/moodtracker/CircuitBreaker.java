@@ -0,0 +1,88 @@
+package moodtracker;
+
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * Fails calls at once while a dependency is known to be down, instead of letting every
+ * caller wait out its own timeout. After {@code failureThreshold} consecutive failures
+ * the breaker opens and {@link #acquire()} throws; once {@code openMs} has passed, one
+ * trial call is let through, and its outcome closes the breaker or opens it again.
+ */
+final class CircuitBreaker {
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private long trialStartedAt;
+
+    CircuitBreaker(String name, int failureThreshold, long openMs) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = Math.max(0, openMs) * 1_000_000;
+    }
+
+    /**
+     * Returns if the call may go ahead; the caller must then report its outcome with
+     * {@link #recordSuccess()} or {@link #recordFailure()}.
+     *
+     * @throws SQLTransientConnectionException while the breaker is open
+     */
+    synchronized void acquire() throws SQLTransientConnectionException {
+        long now = System.nanoTime();
+        switch (state) {
+            case CLOSED:
+                return;
+            case OPEN:
+                if (now - openedAt >= openNanos) {
+                    state = State.HALF_OPEN;
+                    trialStartedAt = now;
+                    return;
+                }
+                break;
+            case HALF_OPEN:
+                // A trial that never reported back must not keep the breaker shut for good
+                if (now - trialStartedAt >= openNanos) {
+                    trialStartedAt = now;
+                    return;
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown breaker state: " + state);
+        }
+        long retryMs = Math.max(0, (openNanos - (now - openedAt)) / 1_000_000);
+        throw new SQLTransientConnectionException(name + " is unavailable; not retrying for another "
+                + retryMs + " ms.", "08001");
+    }
+
+    synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            System.err.println(name + " recovered");
+        }
+        state = State.CLOSED;
+        failures = 0;
+    }
+
+    synchronized void recordFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= failureThreshold)) {
+            if (state == State.CLOSED) {
+                System.err.println(name + " failed " + failures + " times in a row; failing fast for "
+                        + openNanos / 1_000_000 + " ms");
+            }
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+}
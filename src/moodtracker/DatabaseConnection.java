@@ -1,15 +1,430 @@
 package moodtracker;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Bounded JDBC connection pool. {@link #getConnection()} hands out a pooled
+ * connection whose {@code close()} returns it to the pool instead of closing the
+ * socket, so callers keep using try-with-resources exactly as before.
+ *
+ * <p>Connects and replies are bounded by {@code moodtracker.db.connectTimeoutMs} and
+ * {@code moodtracker.db.socketTimeoutMs}. A {@link CircuitBreaker} counts connections
+ * that could not be opened or that the driver closed after an I/O error; after
+ * {@code moodtracker.db.breaker.failures} in a row, {@link #getConnection()} fails at
+ * once for {@code moodtracker.db.breaker.openMs} before letting one trial through.
+ */
 public class DatabaseConnection {
-    private static final String URL = "jdbc:mysql://localhost:3306/data";
-    private static final String USER = "root";
-    private static final String PASSWORD = "0000";
+    private static final String URL = AppConfig.get("moodtracker.db.url", "jdbc:mysql://localhost:3306/data?createDatabaseIfNotExist=true");
+    private static final String USER = AppConfig.get("moodtracker.db.user", "root");
+    private static final String PASSWORD = AppConfig.get("moodtracker.db.password", "0000");
+    // Bounds on a dead or hung server: opening a socket, and waiting for any single reply
+    private static final int CONNECT_TIMEOUT_MS = AppConfig.getInt("moodtracker.db.connectTimeoutMs", 3_000);
+    private static final int SOCKET_TIMEOUT_MS = AppConfig.getInt("moodtracker.db.socketTimeoutMs", 15_000);
+
+    private static final int MAX_POOL_SIZE = Math.max(1, AppConfig.getInt("moodtracker.pool.maxSize", 8));
+    private static final int MIN_IDLE = Math.min(MAX_POOL_SIZE, AppConfig.getInt("moodtracker.pool.minIdle", 1));
+    private static final long CONNECTION_TIMEOUT_MS = AppConfig.getLong("moodtracker.pool.connectionTimeoutMs", 10_000);
+    private static final long IDLE_TIMEOUT_MS = AppConfig.getLong("moodtracker.pool.idleTimeoutMs", 5 * 60_000);
+    private static final long MAX_LIFETIME_MS = AppConfig.getLong("moodtracker.pool.maxLifetimeMs", 30 * 60_000);
+    private static final long VALIDATE_AFTER_IDLE_MS = AppConfig.getLong("moodtracker.pool.validateAfterIdleMs", 5_000);
+    private static final int VALIDATION_TIMEOUT_SECONDS = AppConfig.getInt("moodtracker.pool.validationTimeoutSeconds", 2);
+    private static final long HOUSEKEEPING_INTERVAL_MS = AppConfig.getLong("moodtracker.pool.housekeepingIntervalMs", 30_000);
+
+    private static final CircuitBreaker BREAKER = new CircuitBreaker("Database",
+            AppConfig.getInt("moodtracker.db.breaker.failures", 3), AppConfig.getLong("moodtracker.db.breaker.openMs", 5_000));
+
+    private static final Semaphore PERMITS = new Semaphore(MAX_POOL_SIZE, true);
+    // Most recently returned connection first, so warm connections are reused and cold ones age out
+    private static final Deque<PooledConnection> IDLE = new ArrayDeque<>();
+    private static final AtomicInteger ACTIVE = new AtomicInteger();
+    private static final AtomicLong ACQUIRE_COUNT = new AtomicLong();
+    private static final AtomicLong TOTAL_WAIT_NANOS = new AtomicLong();
+    private static final AtomicLong MAX_WAIT_NANOS = new AtomicLong();
+    private static final AtomicLong TIMEOUT_COUNT = new AtomicLong();
+    private static final AtomicLong CREATED_COUNT = new AtomicLong();
+    private static final AtomicLong CLOSED_COUNT = new AtomicLong();
+    private static volatile boolean shutdown;
+
+    static {
+        ScheduledExecutorService housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "db-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.scheduleWithFixedDelay(DatabaseConnection::evictIdle,
+                HOUSEKEEPING_INTERVAL_MS, HOUSEKEEPING_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        // No shutdown hook of its own: JdbcMoodStore.close() shuts the pool down once queued writes are flushed
+    }
 
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+        if (shutdown) {
+            throw new SQLException("Connection pool has been shut down.");
+        }
+        BREAKER.acquire();
+        MoodEvents.ConnectionAcquire event = new MoodEvents.ConnectionAcquire();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            if (!PERMITS.tryAcquire(CONNECTION_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                TIMEOUT_COUNT.incrementAndGet();
+                Metrics.recordConnectionAcquire(event, start, false, false);
+                throw new SQLTransientConnectionException("Timed out after " + CONNECTION_TIMEOUT_MS
+                        + " ms waiting for a database connection (pool size " + MAX_POOL_SIZE + ").");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a database connection.", e);
+        }
+        recordWait(System.nanoTime() - start);
+
+        boolean created = false;
+        try {
+            PooledConnection pooled = takeIdle();
+            if (pooled == null) {
+                pooled = new PooledConnection(connect());
+                CREATED_COUNT.incrementAndGet();
+                created = true;
+            }
+            ACTIVE.incrementAndGet();
+            Connection connection = pooled.checkout();
+            Metrics.recordConnectionAcquire(event, start, created, true);
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            PERMITS.release();
+            Metrics.recordConnectionAcquire(event, start, created, false);
+            throw e;
+        }
+    }
+
+    /**
+     * Whether the error means the database could not be reached or stopped answering,
+     * as opposed to rejecting the statement itself.
+     */
+    static boolean isConnectionFailure(SQLException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransientConnectionException || cause instanceof SQLNonTransientConnectionException
+                    || cause instanceof SQLRecoverableException) {
+                return true;
+            }
+            if (cause instanceof SQLException) {
+                String state = ((SQLException) cause).getSQLState();
+                if (state != null && state.startsWith("08")) {
+                    return true; // SQL standard class 08: connection exception
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a snapshot of the pool counters, for sizing the pool under load.
+     */
+    public static PoolStats getPoolStats() {
+        int idle;
+        synchronized (IDLE) {
+            idle = IDLE.size();
+        }
+        return new PoolStats(ACTIVE.get(), idle, MAX_POOL_SIZE, PERMITS.getQueueLength(),
+                ACQUIRE_COUNT.get(), TOTAL_WAIT_NANOS.get(), MAX_WAIT_NANOS.get(), TIMEOUT_COUNT.get(),
+                CREATED_COUNT.get(), CLOSED_COUNT.get());
+    }
+
+    /**
+     * Closes every idle connection and refuses new checkouts. Connections still in use
+     * are closed as they are returned.
+     */
+    public static void shutdown() {
+        shutdown = true;
+        synchronized (IDLE) {
+            for (PooledConnection pooled : IDLE) {
+                pooled.closeQuietly();
+            }
+            IDLE.clear();
+        }
+    }
+
+    private static Connection connect() throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty("user", USER);
+        properties.setProperty("password", PASSWORD);
+        properties.setProperty("connectTimeout", Integer.toString(CONNECT_TIMEOUT_MS));
+        properties.setProperty("socketTimeout", Integer.toString(SOCKET_TIMEOUT_MS));
+        try {
+            Connection connection = DriverManager.getConnection(URL, properties);
+            BREAKER.recordSuccess();
+            return connection;
+        } catch (SQLException e) {
+            BREAKER.recordFailure();
+            throw e;
+        }
+    }
+
+    private static PooledConnection takeIdle() {
+        while (true) {
+            PooledConnection pooled;
+            synchronized (IDLE) {
+                pooled = IDLE.pollFirst();
+            }
+            if (pooled == null) {
+                return null;
+            }
+            long now = System.currentTimeMillis();
+            if (pooled.isExpired(now)) {
+                pooled.closeQuietly();
+                continue;
+            }
+            if (now - pooled.lastUsed > VALIDATE_AFTER_IDLE_MS && !pooled.isValid()) {
+                pooled.closeQuietly();
+                continue;
+            }
+            return pooled;
+        }
+    }
+
+    private static void release(PooledConnection pooled) {
+        ACTIVE.decrementAndGet();
+        try {
+            // The driver closes a connection after a network error or timeout, which reset() notices
+            boolean healthy = pooled.reset();
+            if (!shutdown) {
+                if (healthy) {
+                    BREAKER.recordSuccess();
+                } else {
+                    BREAKER.recordFailure();
+                }
+            }
+            boolean reusable = healthy && !shutdown && !pooled.isExpired(System.currentTimeMillis());
+            if (reusable) {
+                pooled.lastUsed = System.currentTimeMillis();
+                synchronized (IDLE) {
+                    IDLE.addFirst(pooled);
+                }
+            } else {
+                pooled.closeQuietly();
+            }
+        } finally {
+            PERMITS.release();
+        }
+    }
+
+    private static void evictIdle() {
+        long now = System.currentTimeMillis();
+        synchronized (IDLE) {
+            // Oldest idle connections sit at the tail
+            Iterator<PooledConnection> it = IDLE.descendingIterator();
+            while (it.hasNext()) {
+                PooledConnection pooled = it.next();
+                boolean idleTooLong = now - pooled.lastUsed > IDLE_TIMEOUT_MS && IDLE.size() > MIN_IDLE;
+                if (idleTooLong || pooled.isExpired(now)) {
+                    it.remove();
+                    pooled.closeQuietly();
+                }
+            }
+        }
+    }
+
+    private static void recordWait(long waitNanos) {
+        ACQUIRE_COUNT.incrementAndGet();
+        TOTAL_WAIT_NANOS.addAndGet(waitNanos);
+        long max;
+        do {
+            max = MAX_WAIT_NANOS.get();
+        } while (waitNanos > max && !MAX_WAIT_NANOS.compareAndSet(max, waitNanos));
+    }
+
+    private static final class PooledConnection {
+        private final Connection raw;
+        private final long createdAt = System.currentTimeMillis();
+        private volatile long lastUsed = createdAt;
+
+        PooledConnection(Connection raw) {
+            this.raw = raw;
+        }
+
+        boolean isExpired(long now) {
+            return now - createdAt > MAX_LIFETIME_MS;
+        }
+
+        boolean isValid() {
+            try {
+                return raw.isValid(VALIDATION_TIMEOUT_SECONDS);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        // Undo whatever the last borrower left behind so the next one gets a clean connection
+        boolean reset() {
+            try {
+                if (raw.isClosed()) {
+                    return false;
+                }
+                if (!raw.getAutoCommit()) {
+                    raw.rollback();
+                    raw.setAutoCommit(true);
+                }
+                raw.clearWarnings();
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        void closeQuietly() {
+            try {
+                raw.close();
+            } catch (SQLException e) {
+                // Connection is being discarded anyway
+            }
+            CLOSED_COUNT.incrementAndGet();
+        }
+
+        Connection checkout() {
+            // A fresh proxy per checkout, so a stale reference cannot return the connection twice
+            return (Connection) Proxy.newProxyInstance(DatabaseConnection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new CheckoutHandler(this));
+        }
+    }
+
+    private static final class CheckoutHandler implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean closed;
+
+        CheckoutHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    synchronized (this) {
+                        if (closed) {
+                            return null;
+                        }
+                        closed = true;
+                    }
+                    release(pooled);
+                    return null;
+                case "isClosed":
+                    synchronized (this) {
+                        if (closed) {
+                            return true;
+                        }
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.raw + "]";
+                default:
+                    synchronized (this) {
+                        if (closed) {
+                            throw new SQLException("Connection has already been returned to the pool.");
+                        }
+                    }
+            }
+            try {
+                return method.invoke(pooled.raw, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    public static final class PoolStats {
+        private final int active;
+        private final int idle;
+        private final int maxSize;
+        private final int waitingThreads;
+        private final long acquireCount;
+        private final long totalWaitNanos;
+        private final long maxWaitNanos;
+        private final long timeoutCount;
+        private final long createdCount;
+        private final long closedCount;
+
+        PoolStats(int active, int idle, int maxSize, int waitingThreads, long acquireCount, long totalWaitNanos,
+                  long maxWaitNanos, long timeoutCount, long createdCount, long closedCount) {
+            this.active = active;
+            this.idle = idle;
+            this.maxSize = maxSize;
+            this.waitingThreads = waitingThreads;
+            this.acquireCount = acquireCount;
+            this.totalWaitNanos = totalWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+            this.timeoutCount = timeoutCount;
+            this.createdCount = createdCount;
+            this.closedCount = closedCount;
+        }
+
+        public int getActive() {
+            return active;
+        }
+
+        public int getIdle() {
+            return idle;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public int getWaitingThreads() {
+            return waitingThreads;
+        }
+
+        public long getAcquireCount() {
+            return acquireCount;
+        }
+
+        public double getAverageWaitMillis() {
+            return acquireCount == 0 ? 0 : totalWaitNanos / 1_000_000.0 / acquireCount;
+        }
+
+        public double getMaxWaitMillis() {
+            return maxWaitNanos / 1_000_000.0;
+        }
+
+        public long getTimeoutCount() {
+            return timeoutCount;
+        }
+
+        public long getCreatedCount() {
+            return createdCount;
+        }
+
+        public long getClosedCount() {
+            return closedCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("active=%d idle=%d max=%d waiting=%d acquired=%d avgWait=%.3fms maxWait=%.3fms"
+                            + " timeouts=%d created=%d closed=%d",
+                    active, idle, maxSize, waitingThreads, acquireCount, getAverageWaitMillis(), getMaxWaitMillis(),
+                    timeoutCount, createdCount, closedCount);
+        }
     }
 }
@@ -0,0 +1,74 @@
+package moodtracker;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Watches the Swing event dispatch thread by posting a heartbeat every
+ * {@value #PROBE_INTERVAL_MS} ms. When a heartbeat waits longer than
+ * {@code moodtracker.metrics.edtStallMs} (default 200) the EDT's stack is captured
+ * while it is still stuck, and the stall is recorded once the heartbeat finally runs.
+ */
+final class EdtStallDetector implements Runnable {
+    private static final long PROBE_INTERVAL_MS = 50;
+
+    private final long thresholdNanos;
+    private volatile Thread edt;
+    private volatile boolean pending;
+    private volatile long postedAt;
+    private volatile String stallStack;
+
+    private EdtStallDetector(long thresholdMs) {
+        this.thresholdNanos = thresholdMs * 1_000_000;
+    }
+
+    /**
+     * Starts the detector unless the threshold is configured as 0.
+     */
+    static void start() {
+        long thresholdMs = AppConfig.getLong("moodtracker.metrics.edtStallMs", 200);
+        if (thresholdMs <= 0) {
+            return;
+        }
+        Thread thread = new Thread(new EdtStallDetector(thresholdMs), "edt-stall-detector");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                Thread.sleep(PROBE_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (!pending) {
+                stallStack = null;
+                postedAt = System.nanoTime();
+                pending = true;
+                SwingUtilities.invokeLater(this::heartbeat);
+            } else if (stallStack == null && System.nanoTime() - postedAt > thresholdNanos) {
+                Thread stuck = edt;
+                stallStack = stuck != null ? format(stuck.getStackTrace()) : "";
+            }
+        }
+    }
+
+    private void heartbeat() {
+        edt = Thread.currentThread();
+        long waited = System.nanoTime() - postedAt;
+        String stack = stallStack;
+        pending = false;
+        if (waited > thresholdNanos) {
+            Metrics.recordEdtStall(waited, stack == null || stack.isEmpty() ? null : stack);
+        }
+    }
+
+    private static String format(StackTraceElement[] frames) {
+        StringBuilder text = new StringBuilder();
+        for (StackTraceElement frame : frames) {
+            text.append("\tat ").append(frame).append('\n');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,538 @@
+package moodtracker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over gratitude text: each word maps to a posting list of the epoch
+ * days whose entry contains it, with the number of occurrences. There is one index per
+ * {@link MoodStore}, kept current by {@link MoodRepository} on every write. The default
+ * store's index is saved to {@code moodtracker.search.file} (default
+ * {@code data/gratitude.idx}) a few seconds after changes and on exit, so the next
+ * start reads the file instead of every entry. The file records the store's
+ * {@linkplain MoodStore#getChangeMarker() change marker} and is trusted only while the
+ * store still reports it; otherwise the index is rebuilt from the store. Writes made
+ * after loading starts are replayed on top of whatever the load read.
+ *
+ * <p>Searches rank days by how many query words they contain, then by TF-IDF, then
+ * newest first. The last query word also matches as a prefix, for search-as-you-type.
+ */
+public final class GratitudeSearchIndex {
+    // Keyed by identity: two repositories over the same store must share one index
+    private static final Map<MoodStore, GratitudeSearchIndex> BY_STORE = new IdentityHashMap<>();
+    private static final int MAGIC = 0x47524154; // "GRAT"
+    private static final int VERSION = 2;
+    private static final long SAVE_DELAY_MS = 5_000;
+    private static final int MAX_PREFIX_EXPANSIONS = 50;
+
+    // Null for an index that lives only in memory
+    private final Path file;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Postings> postings = new TreeMap<>();
+    // Distinct words of each entry, so an edit can retract the old postings; entries without text map to none
+    private final TreeMap<Integer, String[]> termsByDay = new TreeMap<>();
+    private final ScheduledExecutorService saver;
+    private final Object saveLock = new Object();
+    private boolean loaded;
+    private boolean dirty;
+    // Text written after loading started (null for a delete), replayed once it has finished
+    private Map<Integer, String> writesDuringLoad;
+    private volatile MoodRepository repository;
+    private CompletableFuture<GratitudeSearchIndex> loading;
+    private ScheduledFuture<?> scheduledSave;
+
+    GratitudeSearchIndex(Path file) {
+        this.file = file;
+        if (file == null) {
+            saver = null;
+            return;
+        }
+        saver = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "gratitude-index-saver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Runtime.getRuntime().addShutdownHook(new Thread(this::saveIfDirty, "gratitude-index-save"));
+    }
+
+    /**
+     * The index of the default store ({@link MoodStores#getDefault()}).
+     */
+    public static GratitudeSearchIndex getShared() {
+        return of(new MoodRepository());
+    }
+
+    /**
+     * The index of the store behind the given repository. Only the default store's index
+     * is saved to {@code moodtracker.search.file}; any other is rebuilt on each start.
+     */
+    public static GratitudeSearchIndex of(MoodRepository repository) {
+        synchronized (BY_STORE) {
+            return BY_STORE.computeIfAbsent(repository.getStore(), store -> new GratitudeSearchIndex(
+                    MoodStores.isDefault(store)
+                            ? Paths.get(AppConfig.get("moodtracker.search.file", "data/gratitude.idx")) : null));
+        }
+    }
+
+    /**
+     * Loads the index from its file, or rebuilds it from the repository when the file is
+     * missing or out of date, unless that already happened.
+     */
+    public synchronized CompletableFuture<GratitudeSearchIndex> ensureLoaded(MoodRepository repository) {
+        if (loading == null || loading.isCompletedExceptionally()) {
+            this.repository = repository;
+            lock.writeLock().lock();
+            try {
+                if (writesDuringLoad == null) {
+                    writesDuringLoad = new LinkedHashMap<>();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            loading = AsyncMoodRepository.run(() -> {
+                load(repository);
+                return this;
+            });
+        }
+        return loading;
+    }
+
+    public boolean isLoaded() {
+        lock.readLock().lock();
+        try {
+            return loaded;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(LocalDate date) {
+        lock.readLock().lock();
+        try {
+            return termsByDay.containsKey((int) date.toEpochDay());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(LocalDate date, String gratitude) {
+        write((int) date.toEpochDay(), gratitude == null ? "" : gratitude);
+    }
+
+    public void remove(LocalDate date) {
+        write((int) date.toEpochDay(), null);
+    }
+
+    /**
+     * Days whose gratitude text matches the query, best first.
+     */
+    public List<SearchHit> search(String query, int limit) {
+        List<String> words = new ArrayList<>(new LinkedHashSet<>(GratitudeTokenizer.tokenize(query)));
+        if (words.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            if (termsByDay.isEmpty()) {
+                return Collections.emptyList();
+            }
+            int firstDay = termsByDay.firstKey();
+            int days = termsByDay.lastKey() - firstDay + 1;
+            Scores scores = new Scores(days);
+            int documents = termsByDay.size();
+            for (int w = 0; w < words.size(); w++) {
+                String word = words.get(w);
+                scores.word = w + 1;
+                Postings exact = postings.get(word);
+                if (exact != null) {
+                    scores.add(exact, 1.0f, documents, firstDay);
+                }
+                if (w == words.size() - 1) {
+                    int expansions = 0;
+                    for (Map.Entry<String, Postings> entry : postings.subMap(word, false, word + Character.MAX_VALUE, false).entrySet()) {
+                        if (++expansions > MAX_PREFIX_EXPANSIONS) {
+                            break;
+                        }
+                        scores.add(entry.getValue(), 0.5f, documents, firstDay);
+                    }
+                }
+            }
+            return scores.topHits(firstDay, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return termsByDay.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static final class SearchHit {
+        private final LocalDate date;
+        private final int matchedWords;
+        private final float score;
+
+        SearchHit(LocalDate date, int matchedWords, float score) {
+            this.date = date;
+            this.matchedWords = matchedWords;
+            this.score = score;
+        }
+
+        public LocalDate getDate() {
+            return date;
+        }
+
+        public int getMatchedWords() {
+            return matchedWords;
+        }
+
+        public float getScore() {
+            return score;
+        }
+    }
+
+    // Per-day accumulators for one search, indexed by epoch day minus the first indexed day
+    private static final class Scores {
+        private final float[] tfIdf;
+        private final short[] matchedWords;
+        // Last query word credited to each day, so a prefix and an exact match count as one word
+        private final short[] lastWord;
+        private int word;
+
+        Scores(int days) {
+            tfIdf = new float[days];
+            matchedWords = new short[days];
+            lastWord = new short[days];
+        }
+
+        void add(Postings list, float weight, int documents, int firstDay) {
+            float idf = (float) Math.log(1 + (double) documents / list.size);
+            for (int i = 0; i < list.size; i++) {
+                int slot = list.days[i] - firstDay;
+                tfIdf[slot] += weight * (1 + (float) Math.log(list.counts[i])) * idf;
+                if (lastWord[slot] != word) {
+                    lastWord[slot] = (short) word;
+                    matchedWords[slot]++;
+                }
+            }
+        }
+
+        List<SearchHit> topHits(int firstDay, int limit) {
+            // Min-heap of the best slots so far, so only the returned hits are ever sorted or allocated
+            PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1, (a, b) -> compare(a, b));
+            for (int slot = 0; slot < tfIdf.length; slot++) {
+                if (matchedWords[slot] != 0) {
+                    best.add(slot);
+                    if (best.size() > limit) {
+                        best.poll();
+                    }
+                }
+            }
+            SearchHit[] hits = new SearchHit[best.size()];
+            for (int i = hits.length - 1; i >= 0; i--) {
+                int slot = best.poll();
+                hits[i] = new SearchHit(LocalDate.ofEpochDay(firstDay + slot), matchedWords[slot], tfIdf[slot]);
+            }
+            return Arrays.asList(hits);
+        }
+
+        // Orders by matched words, then TF-IDF, then date, worst first
+        private int compare(int a, int b) {
+            if (matchedWords[a] != matchedWords[b]) {
+                return matchedWords[a] - matchedWords[b];
+            }
+            int byScore = Float.compare(tfIdf[a], tfIdf[b]);
+            return byScore != 0 ? byScore : Integer.compare(a, b);
+        }
+    }
+
+    private void write(int epochDay, String gratitude) {
+        lock.writeLock().lock();
+        try {
+            if (writesDuringLoad != null) {
+                writesDuringLoad.put(epochDay, gratitude);
+            } else if (!loaded) {
+                return; // The store already has it, so the eventual load reads it from there
+            }
+            apply(epochDay, gratitude);
+            if (loaded) {
+                dirty = true;
+                scheduleSave();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Caller holds the write lock; null text removes the day
+    private void apply(int epochDay, String gratitude) {
+        String[] previous = termsByDay.remove(epochDay);
+        if (previous != null) {
+            for (String term : previous) {
+                Postings list = postings.get(term);
+                if (list != null && list.remove(epochDay) && list.size == 0) {
+                    postings.remove(term);
+                }
+            }
+        }
+        if (gratitude == null) {
+            return;
+        }
+        Map<String, Integer> counts = new HashMap<>();
+        for (String token : GratitudeTokenizer.tokenize(gratitude)) {
+            counts.merge(token, 1, Integer::sum);
+        }
+        String[] terms = new String[counts.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            String term = entry.getKey();
+            terms[i++] = term;
+            postings.computeIfAbsent(term, t -> new Postings()).put(epochDay, entry.getValue());
+        }
+        termsByDay.put(epochDay, terms);
+    }
+
+    private void load(MoodRepository repository) throws SQLException {
+        String marker = repository.getChangeMarker();
+        SavedIndex saved = null;
+        try {
+            saved = file == null ? null : readFile();
+        } catch (NoSuchFileException e) {
+            // First start: build from the store below
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable search index " + file + ": " + e.getMessage());
+        }
+        boolean current = saved != null && marker != null && marker.equals(saved.marker);
+
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            termsByDay.clear();
+            if (current) {
+                for (Map.Entry<Integer, String[]> day : saved.days.entrySet()) {
+                    String[] terms = day.getValue();
+                    int[] termCounts = saved.counts.get(day.getKey());
+                    for (int i = 0; i < terms.length; i++) {
+                        postings.computeIfAbsent(terms[i], t -> new Postings()).put(day.getKey(), termCounts[i]);
+                    }
+                    termsByDay.put(day.getKey(), terms);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (!current) {
+            // Applied under the lock one entry at a time, so searches keep working during a rebuild
+            repository.forEachFullEntry(mood -> {
+                lock.writeLock().lock();
+                try {
+                    apply((int) mood.getDate().toEpochDay(), mood.getGratitude() == null ? "" : mood.getGratitude());
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            });
+        }
+
+        lock.writeLock().lock();
+        try {
+            // Kept until now, so writes made during this load, or during a failed one, are not lost
+            for (Map.Entry<Integer, String> write : writesDuringLoad.entrySet()) {
+                apply(write.getKey(), write.getValue());
+            }
+            dirty = !current || !writesDuringLoad.isEmpty();
+            writesDuringLoad = null;
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        saveIfDirty();
+    }
+
+    private SavedIndex readFile() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("not a search index file (or unsupported version)");
+            }
+            SavedIndex saved = new SavedIndex(in.readUTF());
+            int dayCount = in.readInt();
+            for (int d = 0; d < dayCount; d++) {
+                int epochDay = in.readInt();
+                int termCount = in.readUnsignedShort();
+                String[] terms = new String[termCount];
+                int[] termCounts = new int[termCount];
+                for (int t = 0; t < termCount; t++) {
+                    terms[t] = in.readUTF();
+                    termCounts[t] = in.readUnsignedShort();
+                }
+                saved.days.put(epochDay, terms);
+                saved.counts.put(epochDay, termCounts);
+            }
+            return saved;
+        }
+    }
+
+    // Caller holds the write lock
+    private void scheduleSave() {
+        if (saver == null) {
+            return;
+        }
+        if (scheduledSave == null || scheduledSave.isDone()) {
+            scheduledSave = saver.schedule(this::saveIfDirty, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Saves the index with the store's current marker. The marker is read first: a write
+     * that reaches the store after that point changes the marker, and one that reaches the
+     * store before it but the index only after the save marks the index dirty again, so
+     * the next save, at the latest on exit, records it.
+     */
+    private void saveIfDirty() {
+        synchronized (saveLock) {
+            MoodRepository source = repository;
+            if (file == null || source == null || !isDirty()) {
+                return;
+            }
+            String marker;
+            try {
+                marker = source.getChangeMarker();
+            } catch (SQLException | RuntimeException e) {
+                System.err.println("Not saving search index " + file + ": " + e.getMessage());
+                return;
+            }
+            if (marker != null) {
+                save(marker);
+            }
+        }
+    }
+
+    private boolean isDirty() {
+        lock.readLock().lock();
+        try {
+            return loaded && dirty;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void save(String marker) {
+        lock.readLock().lock();
+        try {
+            if (!loaded || !dirty) {
+                return;
+            }
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(marker);
+                out.writeInt(termsByDay.size());
+                for (Map.Entry<Integer, String[]> day : termsByDay.entrySet()) {
+                    String[] terms = day.getValue();
+                    out.writeInt(day.getKey());
+                    out.writeShort(terms.length);
+                    for (String term : terms) {
+                        out.writeUTF(term);
+                        out.writeShort(Math.min(0xFFFF, postings.get(term).countOf(day.getKey())));
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+        } catch (IOException e) {
+            System.err.println("Could not save search index " + file + ": " + e.getMessage());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Contents of the index file as read at startup
+    private static final class SavedIndex {
+        private final String marker;
+        private final Map<Integer, String[]> days = new HashMap<>();
+        private final Map<Integer, int[]> counts = new HashMap<>();
+
+        SavedIndex(String marker) {
+            this.marker = marker;
+        }
+    }
+
+    // Days in ascending order with the number of occurrences on each
+    private static final class Postings {
+        private int[] days = new int[4];
+        private int[] counts = new int[4];
+        private int size;
+
+        void put(int day, int count) {
+            int index = Arrays.binarySearch(days, 0, size, day);
+            if (index >= 0) {
+                counts[index] = count;
+                return;
+            }
+            index = -index - 1;
+            if (size == days.length) {
+                days = Arrays.copyOf(days, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            // New entries are almost always the latest day, so this rarely shifts anything
+            System.arraycopy(days, index, days, index + 1, size - index);
+            System.arraycopy(counts, index, counts, index + 1, size - index);
+            days[index] = day;
+            counts[index] = count;
+            size++;
+        }
+
+        boolean remove(int day) {
+            int index = Arrays.binarySearch(days, 0, size, day);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(days, index + 1, days, index, size - index - 1);
+            System.arraycopy(counts, index + 1, counts, index, size - index - 1);
+            size--;
+            return true;
+        }
+
+        int countOf(int day) {
+            int index = Arrays.binarySearch(days, 0, size, day);
+            return index < 0 ? 0 : counts[index];
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package moodtracker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Splits gratitude text into lowercase words for searching and analysis. Words are
+ * runs of letters and digits (apostrophes inside a word are dropped, so "sister's"
+ * becomes "sisters"); single characters and common English filler words are skipped.
+ */
+final class GratitudeTokenizer {
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "a", "an", "and", "am", "are", "as", "at", "be", "but", "by", "for", "from", "had", "has", "have",
+            "i", "im", "in", "is", "it", "its", "me", "my", "of", "on", "or", "so", "that", "the", "this",
+            "to", "was", "we", "were", "with"));
+
+    private GratitudeTokenizer() {
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if ((c == '\'' || c == '\u2019') && word.length() > 0) {
+                continue;
+            } else if (word.length() > 0) {
+                addToken(tokens, word.toString());
+                word.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    static boolean isStopWord(String token) {
+        return STOP_WORDS.contains(token);
+    }
+
+    private static void addToken(List<String> tokens, String word) {
+        if (word.length() > 1 && !STOP_WORDS.contains(word)) {
+            tokens.add(word);
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package moodtracker;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * MySQL engine: the {@code moodentries} table, reached through the
+ * {@link DatabaseConnection} pool. Rows carry an {@code updatedAt} timestamp and
+ * deletes leave a tombstone (see {@link SchemaManager}), which is what
+ * {@link #streamChangesSince} reads.
+ */
+public class JdbcMoodStore implements SyncableMoodStore {
+    private static final String FULL_COLUMNS = "id, mood, rating, gratitude, entryDate";
+    // Enough of the gratitude text for a table cell; the full body is loaded on demand
+    private static final String SUMMARY_COLUMNS = "id, mood, rating, entryDate, LEFT(gratitude, "
+            + Mood.PREVIEW_LENGTH + ") AS gratitudePreview";
+    private static final String UPSERT_SQL = upsertSql(1);
+    // Rows per multi-row upsert; 500 rows of four parameters stays far below max_allowed_packet for typical entries
+    private static final int ROWS_PER_INSERT = 500;
+    private static final String FULL_MULTI_ROW_UPSERT_SQL = upsertSql(ROWS_PER_INSERT);
+    private static final String UPDATE_SQL = "UPDATE moodentries SET mood = ?, rating = ?, gratitude = ? WHERE entryDate = ?";
+    private static final String DELETE_SQL = "DELETE FROM moodentries WHERE entryDate = ?";
+    // Lookups that must stay on an index as the table grows; SchemaManager EXPLAINs these same strings
+    static final String BY_DATE_SQL = "SELECT " + FULL_COLUMNS + " FROM moodentries WHERE entryDate = ?";
+    static final String BETWEEN_SQL = "SELECT " + SUMMARY_COLUMNS
+            + " FROM moodentries WHERE entryDate BETWEEN ? AND ? ORDER BY entryDate";
+    static final String AFTER_SQL = "SELECT " + SUMMARY_COLUMNS
+            + " FROM moodentries WHERE entryDate > ? ORDER BY entryDate LIMIT ?";
+    static final String GRATITUDE_SQL = "SELECT gratitude FROM moodentries WHERE entryDate = ?";
+    static final String CHANGED_SINCE_SQL = "SELECT " + FULL_COLUMNS
+            + " FROM moodentries WHERE updatedAt >= FROM_UNIXTIME(? / 1000)";
+    // Re-read this much before the watermark, for transactions that committed late with an earlier timestamp
+    private static final long SYNC_OVERLAP_MS = 5_000;
+
+    @Override
+    public void saveMoodEntry(LocalDate date, String mood, String gratitudeText, int rating) throws SQLException {
+        // The unique index on entryDate rejects a second entry for the same day, so no existence check is needed
+        String sql = "INSERT INTO moodentries (mood, rating, gratitude, entryDate) VALUES (?, ?, ?, ?)";
+        try (Connection connection = connect();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, mood);
+            stmt.setInt(2, rating);
+            stmt.setString(3, gratitudeText);
+            stmt.setDate(4, Date.valueOf(date));
+            stmt.executeUpdate();
+        } catch (SQLIntegrityConstraintViolationException e) {
+            // Keeps the type and SQLState, so callers can still tell a taken day from a failure
+            throw new SQLIntegrityConstraintViolationException("An entry for today already exists.",
+                    e.getSQLState(), e.getErrorCode(), e);
+        }
+    }
+
+    @Override
+    public void upsertMoodEntry(LocalDate date, String mood, String gratitudeText, int rating) throws SQLException {
+        try (Connection connection = connect();
+             PreparedStatement stmt = connection.prepareStatement(UPSERT_SQL)) {
+            stmt.setString(1, mood);
+            stmt.setInt(2, rating);
+            stmt.setString(3, gratitudeText);
+            stmt.setDate(4, Date.valueOf(date));
+            stmt.executeUpdate();
+        }
+    }
+
+    @Override
+    public void updateMoodEntry(LocalDate date, String mood, String gratitudeText, int rating) throws SQLException {
+        try (Connection connection = connect();
+             PreparedStatement stmt = connection.prepareStatement(UPDATE_SQL)) {
+            stmt.setString(1, mood);
+            stmt.setInt(2, rating);
+            stmt.setString(3, gratitudeText);
+            stmt.setDate(4, Date.valueOf(date));
+            stmt.executeUpdate();
+        }
+    }
+
+    @Override
+    public void deleteMoodEntryByDate(LocalDate date) throws SQLException {
+        try (Connection connection = connect();
+             PreparedStatement stmt = connection.prepareStatement(DELETE_SQL)) {
+            stmt.setDate(1, Date.valueOf(date));
+            stmt.executeUpdate();
+        }
+    }
+
+    // Upserts go out as multi-row INSERTs and updates and deletes as JDBC batches, all in one transaction
+    @Override
+    public void applyBatch(List<MoodWrite> writes) throws SQLException {
+        if (writes.isEmpty()) {
+            return;
+        }
+        List<MoodWrite> upserts = new ArrayList<>(writes.size());
+        try (Connection connection = connect();
+             PreparedStatement update = connection.prepareStatement(UPDATE_SQL);
+             PreparedStatement delete = connection.prepareStatement(DELETE_SQL)) {
+            connection.setAutoCommit(false);
+            try {
+                boolean updates = false;
+                boolean deletes = false;
+                for (MoodWrite write : writes) {
+                    switch (write.getType()) {
+                        case UPSERT:
+                            upserts.add(write);
+                            break;
+                        case UPDATE:
+                            bindEntry(update, 1, write);
+                            update.addBatch();
+                            updates = true;
+                            break;
+                        case DELETE:
+                            delete.setDate(1, Date.valueOf(write.getDate()));
+                            delete.addBatch();
+                            deletes = true;
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Unknown write type: " + write.getType());
+                    }
+                }
+                for (int from = 0; from < upserts.size(); from += ROWS_PER_INSERT) {
+                    List<MoodWrite> rows = upserts.subList(from, Math.min(upserts.size(), from + ROWS_PER_INSERT));
+                    String sql = rows.size() == ROWS_PER_INSERT ? FULL_MULTI_ROW_UPSERT_SQL : upsertSql(rows.size());
+                    try (PreparedStatement upsert = connection.prepareStatement(sql)) {
+                        int index = 1;
+                        for (MoodWrite row : rows) {
+                            index = bindEntry(upsert, index, row);
+                        }
+                        upsert.executeUpdate();
+                    }
+                }
+                if (updates) {
+                    update.executeBatch();
+                }
+                if (deletes) {
+                    delete.executeBatch();
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
+
+    // Runs from the MoodStores shutdown hook, after any write-behind queue in front of this store has drained
+    @Override
+    public void close() {
+        DatabaseConnection.shutdown();
+    }
+
+    // Binds the four columns of one row starting at the given parameter index and returns the next index
+    private static int bindEntry(PreparedStatement stmt, int index, MoodWrite write) throws SQLException {
+        stmt.setString(index, write.getMood());
+        stmt.setInt(index + 1, write.getRating());
+        stmt.setString(index + 2, write.getGratitude());
+        stmt.setDate(index + 3, Date.valueOf(write.getDate()));
+        return index + 4;
+    }
+
+    private static String upsertSql(int rows) {
+        StringBuilder sql = new StringBuilder("INSERT INTO moodentries (mood, rating, gratitude, entryDate) VALUES ");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
+        }
+        return sql.append(" AS new ON DUPLICATE KEY UPDATE mood = new.mood, rating = new.rating, gratitude = new.gratitude")
+                .toString();
+    }
+
+    @Override
+    public List<Mood> getMoodsByDate(LocalDate date) throws SQLException {
+        String sql = BY_DATE_SQL;
+        List<Mood> moods = new ArrayList<>();
+        try (Connection connection = connect();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setDate(1, Date.valueOf(date));  // Convert LocalDate to SQL Date
+            try (ResultSet rs = executeQuery(stmt)) {
+                while (rs.next()) {
+                    moods.add(mapRow(rs));
+                }
+            }
+        }
+        return moods;
+    }
+
+    @Override
+    public List<Mood> getAllEntries() throws SQLException {
+        String sql = "SELECT " + FULL_COLUMNS + " FROM moodentries ORDER BY entryDate";
+        List<Mood> moods = new ArrayList<>();
+        try (Connection connection = connect();
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                moods.add(mapRow(rs));
+            }
+        }
+        return moods;
+    }
+
+    @Override
+    public void streamEntries(Consumer<Mood> action) throws SQLException {
+        String sql = "SELECT " + FULL_COLUMNS + " FROM moodentries ORDER BY entryDate";
+        try (Connection connection = connect();
+             Statement stmt = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            // Connector/J then streams rows off the socket one at a time instead of buffering the result
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                while (rs.next()) {
+                    action.accept(mapRow(rs));
+                }
+            }
+        }
+    }
+
+    @Override
+    public long streamChangesSince(long sinceMillis, Consumer<MoodWrite> changes) throws SQLException {
+        long from = Math.max(0, sinceMillis - SYNC_OVERLAP_MS);
+        try (Connection connection = connect()) {
+            // Taken before reading, so anything committed while we read is picked up next time
+            long watermark;
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT ROUND(UNIX_TIMESTAMP(NOW(3)) * 1000)")) {
+                rs.next();
+                watermark = rs.getLong(1);
+            }
+            String rows = sinceMillis > 0 ? CHANGED_SINCE_SQL : "SELECT " + FULL_COLUMNS + " FROM moodentries";
+            try (PreparedStatement stmt = connection.prepareStatement(rows, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setFetchSize(Integer.MIN_VALUE);
+                if (sinceMillis > 0) {
+                    stmt.setLong(1, from);
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        Mood mood = mapRow(rs);
+                        changes.accept(MoodWrite.upsert(mood.getDate(), mood.getMood(), mood.getGratitude(),
+                                mood.getRating()));
+                    }
+                }
+            }
+            if (sinceMillis > 0) {
+                try (PreparedStatement stmt = connection.prepareStatement(
+                        "SELECT entryDate FROM moodentries_deleted WHERE deletedAt >= FROM_UNIXTIME(? / 1000)")) {
+                    stmt.setLong(1, from);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            changes.accept(MoodWrite.delete(rs.getDate(1).toLocalDate()));
+                        }
+                    }
+                }
+            }
+            return watermark;
+        }
+    }
+
+    @Override
+    public List<Mood> getMoodsBetween(LocalDate start, LocalDate end) throws SQLException {
+        String sql = BETWEEN_SQL;
+        List<Mood> moods = new ArrayList<>();
+        try (Connection connection = connect();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setDate(1, Date.valueOf(start));
+            stmt.setDate(2, Date.valueOf(end));
+            try (ResultSet rs = executeQuery(stmt)) {
+                while (rs.next()) {
+                    moods.add(mapSummaryRow(rs));
+                }
+            }
+        }
+        return moods;
+    }
+
+    // Seeking on the indexed entryDate keeps every page equally cheap, unlike OFFSET paging
+    @Override
+    public List<Mood> getEntriesAfter(LocalDate after, int limit) throws SQLException {
+        String sql = after == null
+                ? "SELECT " + SUMMARY_COLUMNS + " FROM moodentries ORDER BY entryDate LIMIT ?"
+                : AFTER_SQL;
+        List<Mood> moods = new ArrayList<>();
+        try (Connection connection = connect();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int index = 1;
+            if (after != null) {
+                stmt.setDate(index++, Date.valueOf(after));
+            }
+            stmt.setInt(index, limit);
+            try (ResultSet rs = executeQuery(stmt)) {
+                while (rs.next()) {
+                    moods.add(mapSummaryRow(rs));
+                }
+            }
+        }
+        return moods;
+    }
+
+    @Override
+    public LocalDate getEntryDateAt(int offset) throws SQLException {
+        String sql = "SELECT entryDate FROM moodentries ORDER BY entryDate LIMIT 1 OFFSET ?";
+        try (Connection connection = connect();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, offset);
+            try (ResultSet rs = executeQuery(stmt)) {
+                if (rs.next()) {
+                    return rs.getDate(1).toLocalDate();
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String getGratitude(LocalDate date) throws SQLException {
+        String sql = GRATITUDE_SQL;
+        try (Connection connection = connect();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setDate(1, Date.valueOf(date));
+            try (ResultSet rs = executeQuery(stmt)) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    @Override
+    public int countEntries() throws SQLException {
+        String sql = "SELECT COUNT(*) FROM moodentries";
+        try (Connection connection = connect();
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    @Override
+    public List<LocalDate> getDatesWithEntries() throws SQLException {
+        String sql = "SELECT DISTINCT entryDate FROM moodentries";
+        List<LocalDate> dates = new ArrayList<>();
+        try (Connection connection = connect();
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                dates.add(rs.getDate("entryDate").toLocalDate());
+            }
+        }
+        return dates;
+    }
+
+    // The row count alone misses edits; the newest change and tombstone timestamps catch them,
+    // and both maxima are read from the end of their indexes
+    @Override
+    public String getChangeMarker() throws SQLException {
+        String sql = "SELECT COUNT(*), ROUND(UNIX_TIMESTAMP(MAX(updatedAt)) * 1000), "
+                + "(SELECT ROUND(UNIX_TIMESTAMP(MAX(deletedAt)) * 1000) FROM moodentries_deleted) FROM moodentries";
+        try (Connection connection = connect();
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return "mysql:" + rs.getInt(1) + ":" + rs.getLong(2) + ":" + rs.getLong(3);
+        }
+    }
+
+    // Every statement runs against a migrated schema; see SchemaManager
+    private static Connection connect() throws SQLException {
+        SchemaManager.ensureCurrent();
+        return DatabaseConnection.getConnection();
+    }
+
+    // Point and range lookups the UI may give up on; see CancellationToken
+    private static ResultSet executeQuery(PreparedStatement stmt) throws SQLException {
+        return CancellationToken.execute(stmt, stmt::executeQuery);
+    }
+
+    static Mood mapRow(ResultSet rs) throws SQLException {
+        Mood mood = new Mood();
+        mood.setId(rs.getInt("id"));
+        mood.setMood(rs.getString("mood"));
+        mood.setRating(rs.getInt("rating"));
+        mood.setGratitude(rs.getString("gratitude"));
+        mood.setDate(rs.getDate("entryDate").toLocalDate());
+        return mood;
+    }
+
+    private Mood mapSummaryRow(ResultSet rs) throws SQLException {
+        Mood mood = new Mood();
+        mood.setId(rs.getInt("id"));
+        mood.setMood(rs.getString("mood"));
+        mood.setRating(rs.getInt("rating"));
+        mood.setDate(rs.getDate("entryDate").toLocalDate());
+        mood.setGratitudePreview(rs.getString("gratitudePreview"));
+        mood.setGratitudeLoader(this::getGratitude);
+        return mood;
+    }
+}
@@ -0,0 +1,219 @@
+package moodtracker;
+
+import javax.swing.table.AbstractTableModel;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Table model for the entries list that only holds the pages the user has scrolled
+ * to. The row count comes from a single COUNT query against the store, so it holds
+ * every stored entry whatever its mood; pages are fetched in the background with
+ * keyset queries the first time one of their rows is painted.
+ * All methods must be called on the event dispatch thread.
+ */
+public class LazyMoodTableModel extends AbstractTableModel {
+    static final int PAGE_SIZE = 100;
+    private static final int MAX_CACHED_PAGES = 20;
+    private static final String[] COLUMN_NAMES = {"Date", "Mood", "Gratitude", "Rating"};
+    private static final String LOADING = "Loading...";
+
+    private final MoodRepository repository;
+    private final Map<Integer, List<Mood>> pages = new LinkedHashMap<Integer, List<Mood>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<Mood>> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+    private final Set<Integer> loadingPages = new HashSet<>();
+    private int rowCount;
+    // Bumped whenever rows shift, so pages fetched for the old layout are dropped
+    private int generation;
+
+    public LazyMoodTableModel(MoodRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Counts the entries in the background and resets the table to that many rows.
+     */
+    public void reload(Consumer<Throwable> onComplete) {
+        int requestGeneration = ++generation;
+        AsyncMoodRepository.run(repository::countEntries).whenCompleteAsync((count, error) -> {
+            if (requestGeneration == generation && error == null) {
+                pages.clear();
+                loadingPages.clear();
+                rowCount = count;
+                fireTableDataChanged();
+            }
+            onComplete.accept(error);
+        }, AsyncMoodRepository.EDT);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        Mood mood = getMoodAt(rowIndex);
+        if (mood == null) {
+            return columnIndex == 0 ? LOADING : null;
+        }
+        switch (columnIndex) {
+            case 0:
+                return mood.getDate();
+            case 1:
+                return mood.getMood();
+            case 2:
+                return mood.getGratitudePreview();
+            default:
+                return mood.getRating();
+        }
+    }
+
+    /**
+     * Returns the entry shown in the given row, or null if its page is still loading.
+     */
+    public Mood getMoodAt(int rowIndex) {
+        int page = rowIndex / PAGE_SIZE;
+        List<Mood> moods = pages.get(page);
+        if (moods == null) {
+            requestPage(page);
+            return null;
+        }
+        int offset = rowIndex % PAGE_SIZE;
+        return offset < moods.size() ? moods.get(offset) : null;
+    }
+
+    /**
+     * Removes a row after its entry was deleted. Pages from that row on are refetched
+     * because their keyset anchors have shifted.
+     */
+    public void removeRow(int rowIndex) {
+        dropPagesFrom(rowIndex);
+        rowCount--;
+        fireTableRowsDeleted(rowIndex, rowIndex);
+    }
+
+    /**
+     * Patches the rows for changes published on {@link MoodChangeBus} with the smallest
+     * table event that keeps them right: overwritten entries update their row in place,
+     * and a single added or deleted entry inserts or removes one row. Row positions come
+     * from {@link MoodIndex}, which already reflects the changes.
+     *
+     * @return false if the changes could not be placed and the caller should {@link #reload}
+     */
+    public boolean applyChanges(List<MoodChangeEvent> events) {
+        MoodIndex index = MoodIndex.of(repository);
+        if (!index.isLoaded()) {
+            return false;
+        }
+        int added = index.size() - rowCount;
+        if (added == 0) {
+            for (MoodChangeEvent event : events) {
+                if (event.getMood() == null || !index.contains(event.getDate().toEpochDay())) {
+                    return false; // A delete (or import) that rows shifted around
+                }
+            }
+            for (MoodChangeEvent event : events) {
+                if (!replaceRow(index.rankOf(event.getDate().toEpochDay()), event.getMood())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (events.size() != 1 || Math.abs(added) != 1) {
+            return false;
+        }
+        MoodChangeEvent event = events.get(0);
+        long epochDay = event.getDate().toEpochDay();
+        int row = index.rankOf(epochDay);
+        if (added > 0 && event.getMood() != null && index.contains(epochDay)) {
+            dropPagesFrom(row);
+            rowCount++;
+            fireTableRowsInserted(row, row);
+            return true;
+        }
+        if (added < 0 && event.getType() == MoodChangeEvent.Type.DELETED && row < rowCount) {
+            removeRow(row);
+            return true;
+        }
+        return false;
+    }
+
+    // Swaps in the new version of an entry if its page is loaded; false if the row holds another date
+    private boolean replaceRow(int rowIndex, Mood mood) {
+        List<Mood> moods = pages.get(rowIndex / PAGE_SIZE);
+        int offset = rowIndex % PAGE_SIZE;
+        if (moods != null) {
+            if (offset >= moods.size() || !mood.getDate().equals(moods.get(offset).getDate())) {
+                return false;
+            }
+            moods.set(offset, mood);
+        }
+        fireTableRowsUpdated(rowIndex, rowIndex);
+        return true;
+    }
+
+    private void dropPagesFrom(int rowIndex) {
+        generation++;
+        int firstStalePage = rowIndex / PAGE_SIZE;
+        pages.keySet().removeIf(page -> page >= firstStalePage);
+        loadingPages.clear();
+    }
+
+    private void requestPage(int page) {
+        if (!loadingPages.add(page)) {
+            return;
+        }
+        int requestGeneration = generation;
+        List<Mood> previous = pages.get(page - 1);
+        LocalDate knownAnchor = previous != null && !previous.isEmpty()
+                ? previous.get(previous.size() - 1).getDate() : null;
+
+        AsyncMoodRepository.run(() -> {
+            LocalDate after = knownAnchor;
+            if (after == null && page > 0) {
+                // Jumped past unloaded pages: find the last date of the previous page directly
+                after = repository.getEntryDateAt(page * PAGE_SIZE - 1);
+                if (after == null) {
+                    return Collections.<Mood>emptyList(); // Rows were deleted since the count
+                }
+            }
+            return repository.getEntriesAfter(after, PAGE_SIZE);
+        }).whenCompleteAsync((moods, error) -> {
+            if (requestGeneration != generation) {
+                return;
+            }
+            if (error != null) {
+                // Leave the page marked as loading so repaints do not hammer a failing database; reload() retries
+                AsyncMoodRepository.unwrap(error).printStackTrace();
+                return;
+            }
+            loadingPages.remove(page);
+            pages.put(page, moods);
+            int firstRow = page * PAGE_SIZE;
+            int lastRow = Math.min(firstRow + PAGE_SIZE, rowCount) - 1;
+            if (lastRow >= firstRow) {
+                fireTableRowsUpdated(firstRow, lastRow);
+            }
+        }, AsyncMoodRepository.EDT);
+    }
+}
@@ -0,0 +1,719 @@
+package moodtracker;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Embedded engine that needs no server: an append-only log of records in a
+ * memory-mapped file, with an in-memory index from date to record offset. Reads are
+ * an index lookup plus a decode straight from the mapping. Every write appends a new
+ * record and then advances the committed end offset in the file header, so a torn
+ * write is simply ignored on the next start. Superseded records are reclaimed by
+ * periodic compaction. The file is locked while open, so only one store, in one
+ * process, can use it at a time.
+ *
+ * <pre>
+ * file header (64 bytes): magic, version, committed end offset, next id, commit count, file id
+ * record: length(int) type(byte) rating(byte) reserved(short) id(int) epochDay(long)
+ *         mood(80 bytes, UTF-8, zero padded) gratitudeLength(int, -1 for null) gratitude(bytes)
+ * </pre>
+ *
+ * The mood field holds the 20 characters the MySQL column allows in any script.
+ * Version 1 files, with a 16-byte mood field, are rewritten to the current layout
+ * when they are opened.
+ *
+ * A single mapping is limited to 2 GB, which is far beyond a lifetime of entries.
+ */
+public class MappedFileMoodStore implements MoodStore {
+    private static final int MAGIC = 0x4D4F4F44; // "MOOD"
+    private static final int VERSION = 2;
+    private static final int FILE_HEADER_SIZE = 64;
+    private static final int HEADER_END_OFFSET = 8;
+    private static final int HEADER_NEXT_ID = 16;
+    // Both zero in files written before they existed; see open()
+    private static final int HEADER_COMMIT_COUNT = 24;
+    private static final int HEADER_FILE_ID = 32;
+
+    private static final int RECORD_HEADER_SIZE = 104;
+    private static final int RECORD_TYPE = 4;
+    private static final int RECORD_RATING = 5;
+    private static final int RECORD_ID = 8;
+    private static final int RECORD_EPOCH_DAY = 12;
+    private static final int RECORD_MOOD = 20;
+    private static final int MOOD_FIELD_SIZE = 80;
+    private static final int RECORD_GRATITUDE_LENGTH = 100;
+    private static final int VERSION_1_MOOD_FIELD_SIZE = 16;
+    private static final byte TYPE_PUT = 1;
+    private static final byte TYPE_DELETE = 2;
+
+    private static final int INITIAL_CAPACITY = 1 << 20;
+    private static final long COMPACT_MIN_DEAD_BYTES = 1 << 20;
+    private static final int STREAM_CHUNK = 1000;
+
+    private final Path path;
+    private final boolean syncWrites;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // epochDay -> offset of the live record for that day
+    private final TreeMap<Long, Integer> index = new TreeMap<>();
+    private final ScheduledExecutorService compactor;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int endOffset;
+    private int nextId;
+    // Together they make the change marker: a recreated file gets a new id, every commit a new count
+    private long commitCount;
+    private long fileId;
+    private long liveBytes;
+    private long deadBytes;
+
+    public MappedFileMoodStore(Path path) throws SQLException {
+        this(path, AppConfig.getBoolean("moodtracker.store.file.syncWrites", true),
+                AppConfig.getLong("moodtracker.store.file.compactIntervalMs", 10 * 60_000));
+    }
+
+    public MappedFileMoodStore(Path path, boolean syncWrites, long compactIntervalMs) throws SQLException {
+        this.path = path;
+        this.syncWrites = syncWrites;
+        try {
+            open();
+        } catch (IOException e) {
+            throw new SQLException("Could not open mood store " + path + ": " + e.getMessage(), e);
+        }
+        compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mood-store-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (compactIntervalMs > 0) {
+            compactor.scheduleWithFixedDelay(this::compactIfWorthwhile, compactIntervalMs, compactIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void saveMoodEntry(LocalDate date, String mood, String gratitudeText, int rating) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            if (index.containsKey(date.toEpochDay())) {
+                throw new SQLIntegrityConstraintViolationException("An entry for today already exists.");
+            }
+            append(TYPE_PUT, nextId, date.toEpochDay(), mood, gratitudeText, rating);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void upsertMoodEntry(LocalDate date, String mood, String gratitudeText, int rating) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            Integer existing = index.get(date.toEpochDay());
+            int id = existing != null ? buffer.getInt(existing + RECORD_ID) : nextId;
+            append(TYPE_PUT, id, date.toEpochDay(), mood, gratitudeText, rating);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void updateMoodEntry(LocalDate date, String mood, String gratitudeText, int rating) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            Integer existing = index.get(date.toEpochDay());
+            if (existing != null) {
+                append(TYPE_PUT, buffer.getInt(existing + RECORD_ID), date.toEpochDay(), mood, gratitudeText, rating);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteMoodEntryByDate(LocalDate date) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            Integer existing = index.get(date.toEpochDay());
+            if (existing != null) {
+                append(TYPE_DELETE, buffer.getInt(existing + RECORD_ID), date.toEpochDay(), null, null, 0);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Appends every record first and then publishes them with a single header update,
+     * so a crash leaves either all or none of the batch.
+     */
+    @Override
+    public void applyBatch(List<MoodWrite> writes) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            int start = endOffset;
+            int end = start;
+            for (MoodWrite write : writes) {
+                long epochDay = write.getDate().toEpochDay();
+                Integer existing = index.get(epochDay);
+                if (write.getType() == MoodWrite.Type.UPSERT) {
+                    int id = existing != null ? buffer.getInt(existing + RECORD_ID) : nextId++;
+                    end = writeRecord(end, TYPE_PUT, id, epochDay, write.getMood(), write.getGratitude(), write.getRating());
+                } else if (existing != null) {
+                    byte type = write.getType() == MoodWrite.Type.DELETE ? TYPE_DELETE : TYPE_PUT;
+                    end = writeRecord(end, type, buffer.getInt(existing + RECORD_ID), epochDay, write.getMood(),
+                            write.getGratitude(), write.getRating());
+                }
+            }
+            if (end == start) {
+                return;
+            }
+            commit(end);
+            for (int offset = start; offset < end; offset += buffer.getInt(offset)) {
+                applyToIndex(offset, buffer.getInt(offset));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Mood> getMoodsByDate(LocalDate date) {
+        lock.readLock().lock();
+        try {
+            Integer offset = index.get(date.toEpochDay());
+            return offset == null ? Collections.<Mood>emptyList() : Collections.singletonList(readMood(offset, true));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Mood> getAllEntries() {
+        lock.readLock().lock();
+        try {
+            List<Mood> moods = new ArrayList<>(index.size());
+            for (int offset : index.values()) {
+                moods.add(readMood(offset, true));
+            }
+            return moods;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Decodes a chunk at a time so writers are not held up while the consumer does I/O
+    @Override
+    public void streamEntries(Consumer<Mood> action) {
+        Long after = null;
+        List<Mood> chunk = new ArrayList<>(STREAM_CHUNK);
+        do {
+            chunk.clear();
+            lock.readLock().lock();
+            try {
+                NavigableMap<Long, Integer> tail = after == null ? index : index.tailMap(after, false);
+                for (int offset : tail.values()) {
+                    if (chunk.size() == STREAM_CHUNK) {
+                        break;
+                    }
+                    chunk.add(readMood(offset, true));
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            for (Mood mood : chunk) {
+                action.accept(mood);
+            }
+            if (!chunk.isEmpty()) {
+                after = chunk.get(chunk.size() - 1).getDate().toEpochDay();
+            }
+        } while (chunk.size() == STREAM_CHUNK);
+    }
+
+    @Override
+    public List<Mood> getMoodsBetween(LocalDate start, LocalDate end) {
+        lock.readLock().lock();
+        try {
+            List<Mood> moods = new ArrayList<>();
+            for (int offset : index.subMap(start.toEpochDay(), true, end.toEpochDay(), true).values()) {
+                moods.add(readMood(offset, false));
+            }
+            return moods;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Mood> getEntriesAfter(LocalDate after, int limit) {
+        lock.readLock().lock();
+        try {
+            NavigableMap<Long, Integer> tail = after == null ? index : index.tailMap(after.toEpochDay(), false);
+            // Sized from the limit alone: size() of a TreeMap view walks the whole tail
+            List<Mood> moods = new ArrayList<>(Math.min(limit, 256));
+            for (int offset : tail.values()) {
+                if (moods.size() == limit) {
+                    break;
+                }
+                moods.add(readMood(offset, false));
+            }
+            return moods;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public LocalDate getEntryDateAt(int offset) {
+        lock.readLock().lock();
+        try {
+            if (offset < 0 || offset >= index.size()) {
+                return null;
+            }
+            int position = 0;
+            for (long epochDay : index.keySet()) {
+                if (position++ == offset) {
+                    return LocalDate.ofEpochDay(epochDay);
+                }
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String getGratitude(LocalDate date) {
+        lock.readLock().lock();
+        try {
+            Integer offset = index.get(date.toEpochDay());
+            return offset == null ? null : readGratitude(offset);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int countEntries() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String getChangeMarker() {
+        lock.readLock().lock();
+        try {
+            return "file:" + Long.toHexString(fileId) + ":" + commitCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<LocalDate> getDatesWithEntries() {
+        lock.readLock().lock();
+        try {
+            List<LocalDate> dates = new ArrayList<>(index.size());
+            for (long epochDay : index.keySet()) {
+                dates.add(LocalDate.ofEpochDay(epochDay));
+            }
+            return dates;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrites the log with only the live records, in date order, and swaps it in
+     * atomically. The new file is mapped and indexed before it is renamed into place, and
+     * the rename is the last step that can fail, so a failed compaction leaves the store
+     * as it was.
+     */
+    public void compact() throws SQLException {
+        lock.writeLock().lock();
+        try {
+            if (deadBytes == 0) {
+                return;
+            }
+            Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+            FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            TreeMap<Long, Integer> compactedIndex = new TreeMap<>();
+            MappedByteBuffer mapped;
+            try {
+                lockFile(out, compacted);
+                ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+                header.putInt(0, MAGIC);
+                header.putInt(4, VERSION);
+                header.putLong(HEADER_END_OFFSET, FILE_HEADER_SIZE + liveBytes);
+                header.putInt(HEADER_NEXT_ID, nextId);
+                header.putLong(HEADER_COMMIT_COUNT, commitCount);
+                header.putLong(HEADER_FILE_ID, fileId);
+                writeFully(out, header);
+                int position = FILE_HEADER_SIZE;
+                for (Map.Entry<Long, Integer> live : index.entrySet()) {
+                    int offset = live.getValue();
+                    ByteBuffer record = buffer.duplicate();
+                    record.limit(offset + buffer.getInt(offset)).position(offset);
+                    compactedIndex.put(live.getKey(), position);
+                    position += record.remaining();
+                    writeFully(out, record);
+                }
+                out.force(true);
+                mapped = out.map(FileChannel.MapMode.READ_WRITE, 0, out.size());
+                Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException | RuntimeException e) {
+                out.close();
+                Files.deleteIfExists(compacted);
+                throw e;
+            }
+            // The rename committed the compaction; nothing past this point can fail
+            FileChannel oldChannel = channel;
+            channel = out;
+            buffer = mapped;
+            index.clear();
+            index.putAll(compactedIndex);
+            endOffset = FILE_HEADER_SIZE + (int) liveBytes;
+            deadBytes = 0;
+            try {
+                oldChannel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing replaced mood store file " + path + ": " + e.getMessage());
+            }
+        } catch (IOException e) {
+            throw new SQLException("Could not compact mood store " + path + ": " + e.getMessage(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        compactor.shutdownNow();
+        lock.writeLock().lock();
+        try {
+            if (channel.isOpen()) {
+                buffer.force();
+                channel.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing mood store " + path + ": " + e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void compactIfWorthwhile() {
+        try {
+            boolean worthwhile;
+            lock.readLock().lock();
+            try {
+                worthwhile = deadBytes > COMPACT_MIN_DEAD_BYTES && deadBytes > liveBytes;
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (worthwhile) {
+                compact();
+            }
+        } catch (SQLException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    // Maps the file and rebuilds the date index by replaying the log up to the committed end offset
+    private void open() throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+        channel = file.getChannel();
+        lockFile(channel, path);
+        boolean fresh = file.length() == 0;
+        if (fresh) {
+            file.setLength(INITIAL_CAPACITY);
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+        index.clear();
+        liveBytes = 0;
+        deadBytes = 0;
+
+        if (fresh) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(HEADER_END_OFFSET, FILE_HEADER_SIZE);
+            buffer.putInt(HEADER_NEXT_ID, 1);
+            buffer.force();
+        } else if (buffer.getInt(0) == MAGIC && buffer.getInt(4) == 1) {
+            upgradeFromVersion1();
+            open();
+            return;
+        } else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            channel.close();
+            throw new IOException("Not a mood store file (or unsupported version)");
+        }
+        endOffset = (int) buffer.getLong(HEADER_END_OFFSET);
+        nextId = buffer.getInt(HEADER_NEXT_ID);
+        commitCount = buffer.getLong(HEADER_COMMIT_COUNT);
+        fileId = buffer.getLong(HEADER_FILE_ID);
+        if (fileId == 0) {
+            // New file, or one from before file ids; either way nothing can have cached it by id yet
+            do {
+                fileId = ThreadLocalRandom.current().nextLong();
+            } while (fileId == 0);
+            buffer.putLong(HEADER_FILE_ID, fileId);
+            buffer.force();
+        }
+
+        int offset = FILE_HEADER_SIZE;
+        while (offset < endOffset) {
+            int length = buffer.getInt(offset);
+            if (length < RECORD_HEADER_SIZE || offset + length > endOffset) {
+                System.err.println("Truncating damaged mood store " + path + " at offset " + offset);
+                endOffset = offset;
+                buffer.putLong(HEADER_END_OFFSET, endOffset);
+                break;
+            }
+            applyToIndex(offset, length);
+            offset += length;
+        }
+    }
+
+    /**
+     * Takes an exclusive lock on the whole file, held until the channel is closed, so a
+     * second process (the app and a {@code --server} instance, say) cannot map the same
+     * store and overwrite its records. Closes the channel if the lock is taken.
+     */
+    private static void lockFile(FileChannel channel, Path file) throws IOException {
+        FileLock fileLock;
+        try {
+            fileLock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            fileLock = null; // Held by another store in this process
+        }
+        if (fileLock == null) {
+            channel.close();
+            throw new IOException(file + " is already open in another process or store");
+        }
+    }
+
+    /**
+     * Rewrites a version 1 file with the wider mood field, keeping every committed record
+     * in order along with the header counters. The new file is written aside and renamed
+     * over the old one, so a crash leaves one or the other. Closes the channel.
+     */
+    private void upgradeFromVersion1() throws IOException {
+        int growth = MOOD_FIELD_SIZE - VERSION_1_MOOD_FIELD_SIZE;
+        int oldHeaderSize = RECORD_HEADER_SIZE - growth;
+        int end = (int) buffer.getLong(HEADER_END_OFFSET);
+        int records = 0;
+        int offset = FILE_HEADER_SIZE;
+        while (offset < end) {
+            int length = buffer.getInt(offset);
+            if (length < oldHeaderSize || offset + length > end) {
+                System.err.println("Truncating damaged mood store " + path + " at offset " + offset);
+                end = offset;
+                break;
+            }
+            records++;
+            offset += length;
+        }
+
+        Path upgraded = path.resolveSibling(path.getFileName() + ".upgrade");
+        try (FileChannel out = FileChannel.open(upgraded, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer source = buffer.duplicate();
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+            source.limit(FILE_HEADER_SIZE).position(0);
+            header.put(source).flip();
+            header.putInt(4, VERSION);
+            header.putLong(HEADER_END_OFFSET, end + (long) records * growth);
+            writeFully(out, header);
+            int moodEnd = RECORD_MOOD + VERSION_1_MOOD_FIELD_SIZE;
+            for (offset = FILE_HEADER_SIZE; offset < end; offset += buffer.getInt(offset)) {
+                int length = buffer.getInt(offset);
+                ByteBuffer record = ByteBuffer.allocate(length + growth);
+                // Everything up to the old mood field, zero padding, then the rest of the record
+                source.limit(offset + moodEnd).position(offset);
+                record.put(source);
+                record.position(moodEnd + growth);
+                source.limit(offset + length).position(offset + moodEnd);
+                record.put(source).flip();
+                record.putInt(0, length + growth);
+                writeFully(out, record);
+            }
+            out.force(true);
+        }
+        channel.close();
+        try {
+            Files.move(upgraded, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(upgraded);
+            throw e;
+        }
+        System.err.println("Upgraded mood store " + path + " to format version " + VERSION);
+    }
+
+    private void applyToIndex(int offset, int length) {
+        long epochDay = buffer.getLong(offset + RECORD_EPOCH_DAY);
+        Integer previous;
+        if (buffer.get(offset + RECORD_TYPE) == TYPE_PUT) {
+            previous = index.put(epochDay, offset);
+            liveBytes += length;
+        } else {
+            previous = index.remove(epochDay);
+            deadBytes += length; // The tombstone itself is only needed until the next compaction
+        }
+        if (previous != null) {
+            int previousLength = buffer.getInt(previous);
+            liveBytes -= previousLength;
+            deadBytes += previousLength;
+        }
+        nextId = Math.max(nextId, buffer.getInt(offset + RECORD_ID) + 1);
+    }
+
+    private void append(byte type, int id, long epochDay, String mood, String gratitude, int rating) throws SQLException {
+        int offset = endOffset;
+        int end = writeRecord(offset, type, id, epochDay, mood, gratitude, rating);
+        commit(end);
+        applyToIndex(offset, end - offset);
+    }
+
+    // Writes a record past the committed end without publishing it; returns the offset after it
+    private int writeRecord(int offset, byte type, int id, long epochDay, String mood, String gratitude, int rating)
+            throws SQLException {
+        byte[] moodBytes = mood == null ? new byte[0] : mood.getBytes(StandardCharsets.UTF_8);
+        if (moodBytes.length > MOOD_FIELD_SIZE) {
+            throw new SQLException("Mood name is longer than " + MOOD_FIELD_SIZE + " bytes: " + mood);
+        }
+        byte[] gratitudeBytes = gratitude == null ? null : gratitude.getBytes(StandardCharsets.UTF_8);
+        int length = RECORD_HEADER_SIZE + (gratitudeBytes == null ? 0 : gratitudeBytes.length);
+        try {
+            ensureCapacity((long) offset + length);
+        } catch (IOException e) {
+            throw new SQLException("Could not grow mood store " + path + ": " + e.getMessage(), e);
+        }
+
+        ByteBuffer record = buffer.duplicate();
+        record.position(offset);
+        record.putInt(length);
+        record.put(type);
+        record.put((byte) rating);
+        record.putShort((short) 0);
+        record.putInt(id);
+        record.putLong(epochDay);
+        record.put(moodBytes);
+        record.put(new byte[MOOD_FIELD_SIZE - moodBytes.length]);
+        record.putInt(gratitudeBytes == null ? -1 : gratitudeBytes.length);
+        if (gratitudeBytes != null) {
+            record.put(gratitudeBytes);
+        }
+        nextId = Math.max(nextId, id + 1);
+        return offset + length;
+    }
+
+    // Commit: records only count once the header points past them. The records are forced
+    // before the header is written, so the OS can never persist a header pointing at
+    // records it has not written yet.
+    private void commit(int end) {
+        if (syncWrites) {
+            buffer.force();
+        }
+        endOffset = end;
+        commitCount++;
+        buffer.putLong(HEADER_END_OFFSET, endOffset);
+        buffer.putInt(HEADER_NEXT_ID, nextId);
+        buffer.putLong(HEADER_COMMIT_COUNT, commitCount);
+        if (syncWrites) {
+            buffer.force();
+        }
+    }
+
+    private void ensureCapacity(long required) throws IOException {
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        if (required > Integer.MAX_VALUE) {
+            throw new IOException("Mood store is full (2 GB)");
+        }
+        long capacity = Math.min(Integer.MAX_VALUE, Math.max(required, (long) buffer.capacity() * 2));
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private Mood readMood(int offset, boolean full) {
+        Mood mood = new Mood();
+        mood.setId(buffer.getInt(offset + RECORD_ID));
+        mood.setDate(LocalDate.ofEpochDay(buffer.getLong(offset + RECORD_EPOCH_DAY)));
+        mood.setRating(buffer.get(offset + RECORD_RATING));
+        int moodLength = 0;
+        while (moodLength < MOOD_FIELD_SIZE && buffer.get(offset + RECORD_MOOD + moodLength) != 0) {
+            moodLength++;
+        }
+        mood.setMood(decode(offset + RECORD_MOOD, moodLength));
+        if (full) {
+            mood.setGratitude(readGratitude(offset));
+        } else {
+            mood.setGratitudePreview(readGratitudePreview(offset));
+            mood.setGratitudeLoader(this::getGratitude);
+        }
+        return mood;
+    }
+
+    // Decodes only as many bytes as the preview can need: a UTF-16 char takes at most three
+    // UTF-8 bytes, and the spare char absorbs a sequence cut in half at the limit
+    private String readGratitudePreview(int offset) {
+        int length = buffer.getInt(offset + RECORD_GRATITUDE_LENGTH);
+        if (length < 0) {
+            return null;
+        }
+        String prefix = decode(offset + RECORD_HEADER_SIZE, Math.min(length, (Mood.PREVIEW_LENGTH + 1) * 3));
+        return prefix.length() > Mood.PREVIEW_LENGTH ? prefix.substring(0, Mood.PREVIEW_LENGTH) : prefix;
+    }
+
+    private String readGratitude(int offset) {
+        int length = buffer.getInt(offset + RECORD_GRATITUDE_LENGTH);
+        return length < 0 ? null : decode(offset + RECORD_HEADER_SIZE, length);
+    }
+
+    private String decode(int offset, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            out.write(source);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package moodtracker;
+
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process latency and throughput counters for repository calls, connection
+ * acquisition, Swing handlers and startup. Every measurement is also emitted as a custom JFR
+ * event (see {@link MoodEvents}). Setting {@code moodtracker.metrics.dumpIntervalMs}
+ * prints {@link #report()} to stderr at that interval and once more on exit.
+ */
+public final class Metrics {
+    private static final Map<String, OperationStats> OPERATIONS = new ConcurrentSkipListMap<>();
+    private static final long DUMP_INTERVAL_MS = AppConfig.getLong("moodtracker.metrics.dumpIntervalMs", 0);
+    private static final long FIRST_PAINT_TARGET_MS = AppConfig.getLong("moodtracker.startup.firstPaintTargetMs", 1000);
+
+    static {
+        if (DUMP_INTERVAL_MS > 0) {
+            ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "metrics-dump");
+                thread.setDaemon(true);
+                return thread;
+            });
+            dumper.scheduleAtFixedRate(() -> System.err.print(report()), DUMP_INTERVAL_MS, DUMP_INTERVAL_MS,
+                    TimeUnit.MILLISECONDS);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.print(report()), "metrics-final-dump"));
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Runs a repository call, recording its latency, the rows it returned and whether it
+     * failed under the given operation name.
+     */
+    public static <T> T time(String operation, AsyncMoodRepository.SqlCall<T> call) throws SQLException {
+        MoodEvents.RepositoryCall event = new MoodEvents.RepositoryCall();
+        event.begin();
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        int rows = 0;
+        try {
+            T result = call.call();
+            rows = rowsOf(result);
+            succeeded = true;
+            return result;
+        } finally {
+            stats("repository." + operation).record(System.nanoTime() - start, rows, succeeded);
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = operation;
+                event.rows = rows;
+                event.succeeded = succeeded;
+                event.commit();
+            }
+        }
+    }
+
+    public static void run(String operation, SqlAction action) throws SQLException {
+        time(operation, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Records a pool checkout that began with {@code event.begin()} at {@code startNanos}.
+     */
+    static void recordConnectionAcquire(MoodEvents.ConnectionAcquire event, long startNanos, boolean created,
+            boolean succeeded) {
+        stats("db.connection.acquire").record(System.nanoTime() - startNanos, 0, succeeded);
+        event.end();
+        if (succeeded && event.shouldCommit()) {
+            event.created = created;
+            event.commit();
+        }
+    }
+
+    /**
+     * Starts timing a Swing handler. Close the returned span in a {@code finally} block
+     * so the time the handler held the event dispatch thread is recorded.
+     */
+    public static UiSpan startUi(String handler) {
+        return new UiSpan(handler);
+    }
+
+    static void recordStartup(String phase, long nanos) {
+        stats("startup." + phase).record(nanos, 0, true);
+    }
+
+    /**
+     * Records the time from JVM start to the main window's first paint, and warns when
+     * it misses {@code moodtracker.startup.firstPaintTargetMs} (default 1000).
+     */
+    static void recordFirstPaint() {
+        long uptimeMs = ManagementFactory.getRuntimeMXBean().getUptime();
+        recordStartup("firstPaint", uptimeMs * 1_000_000);
+        if (uptimeMs > FIRST_PAINT_TARGET_MS) {
+            System.err.println("First paint took " + uptimeMs + " ms, over the " + FIRST_PAINT_TARGET_MS + " ms target");
+        }
+    }
+
+    static void recordEdtStall(long stallNanos, String stack) {
+        stats("ui.edt.stall").record(stallNanos, 0, true);
+        MoodEvents.EdtStall event = new MoodEvents.EdtStall();
+        if (event.shouldCommit()) {
+            event.stallMillis = stallNanos / 1_000_000;
+            event.stack = stack;
+            event.commit();
+        }
+        System.err.println("EDT stalled for " + stallNanos / 1_000_000 + " ms" + (stack != null ? " in:\n" + stack : ""));
+    }
+
+    /**
+     * Returns a plain-text table of every operation seen so far plus pool statistics.
+     */
+    public static String report() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-40s %8s %6s %9s %9s %9s %9s %9s %9s%n", "operation", "count", "errors",
+                "rows", "mean ms", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+        for (Map.Entry<String, OperationStats> entry : OPERATIONS.entrySet()) {
+            OperationStats stats = entry.getValue();
+            LatencyHistogram latency = stats.latency;
+            report.append(String.format("%-40s %8d %6d %9d %9.3f %9.3f %9.3f %9.3f %9.3f%n", entry.getKey(),
+                    latency.getCount(), stats.errors.sum(), stats.rows.sum(), latency.getMeanMillis(),
+                    latency.getPercentileMillis(50), latency.getPercentileMillis(95),
+                    latency.getPercentileMillis(99), latency.getMaxMillis()));
+        }
+        if (OPERATIONS.containsKey("db.connection.acquire")) {
+            report.append("pool: ").append(DatabaseConnection.getPoolStats()).append(System.lineSeparator());
+        }
+        return report.toString();
+    }
+
+    public static LatencyHistogram getLatency(String operation) {
+        OperationStats stats = OPERATIONS.get(operation);
+        return stats != null ? stats.latency : null;
+    }
+
+    private static OperationStats stats(String operation) {
+        return OPERATIONS.computeIfAbsent(operation, name -> new OperationStats());
+    }
+
+    private static int rowsOf(Object result) {
+        if (result == null) {
+            return 0;
+        }
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        return 1;
+    }
+
+    @FunctionalInterface
+    public interface SqlAction {
+        void run() throws SQLException;
+    }
+
+    public static final class UiSpan implements AutoCloseable {
+        private final String handler;
+        private final long startNanos = System.nanoTime();
+        private final MoodEvents.UiHandler event = new MoodEvents.UiHandler();
+
+        private UiSpan(String handler) {
+            this.handler = handler;
+            event.begin();
+        }
+
+        @Override
+        public void close() {
+            stats("ui." + handler).record(System.nanoTime() - startNanos, 0, true);
+            event.end();
+            if (event.shouldCommit()) {
+                event.handler = handler;
+                event.commit();
+            }
+        }
+    }
+
+    private static final class OperationStats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        void record(long nanos, int rowCount, boolean succeeded) {
+            latency.record(nanos);
+            rows.add(rowCount);
+            if (!succeeded) {
+                errors.increment();
+            }
+        }
+    }
+}
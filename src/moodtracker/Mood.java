@@ -1,14 +1,34 @@
 package moodtracker;
 
+import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Mood {
+    /** Number of gratitude characters summary queries carry for list and calendar views. */
+    public static final int PREVIEW_LENGTH = 80;
+    /** Longest mood name any store keeps, the width of the moodentries.mood column. */
+    public static final int MAX_MOOD_LENGTH = 20;
+    /** Earliest entry date accepted from outside, the first date MySQL's DATE column supports. */
+    public static final LocalDate MIN_DATE = LocalDate.of(1000, 1, 1);
+    /** Latest entry date accepted from outside, the last date MySQL's DATE column supports. */
+    public static final LocalDate MAX_DATE = LocalDate.of(9999, 12, 31);
+    // Unrecognised mood names already reported, so a table full of them logs each once
+    private static final Set<String> REPORTED_UNKNOWN_MOODS = ConcurrentHashMap.newKeySet();
+
     private int id;
-    private String mood;
+    private MoodType moodType;
+    // The stored name when it is not a known MoodType, kept so a save writes it back unchanged
+    private String unknownMood;
     private int rating;
     private String gratitude;
     private LocalDate date;
-    
+    // Summaries carry only a preview; the full text is fetched through the loader on first use
+    private String gratitudePreview;
+    private boolean gratitudeLoaded;
+    private GratitudeLoader gratitudeLoader;
+
     // Getters and Setters
     public int getId() {
         return id;
@@ -18,12 +38,26 @@ public class Mood {
         this.id = id;
     }
 
+    // Display name of the mood, as stored in the moodentries table
     public String getMood() {
-        return mood;
+        return moodType != null ? moodType.getDisplayName() : unknownMood;
     }
 
     public void setMood(String mood) {
-        this.mood = mood;
+        this.moodType = MoodType.fromName(mood);
+        this.unknownMood = moodType == null ? mood : null;
+        if (unknownMood != null && REPORTED_UNKNOWN_MOODS.add(unknownMood)) {
+            System.err.println("Unknown mood \"" + unknownMood + "\"; keeping it as stored");
+        }
+    }
+
+    public MoodType getMoodType() {
+        return moodType;
+    }
+
+    public void setMoodType(MoodType moodType) {
+        this.moodType = moodType;
+        this.unknownMood = null;
     }
 
     public int getRating() {
@@ -34,12 +68,62 @@ public class Mood {
         this.rating = rating;
     }
 
+    /**
+     * Returns the full gratitude text, loading it from the repository if this is a
+     * summary. The load blocks, so UI code should call {@link #loadGratitude()} off the
+     * event dispatch thread first when {@link #isGratitudeLoaded()} is false.
+     */
     public String getGratitude() {
-        return gratitude;
+        try {
+            return loadGratitude();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not load gratitude for " + date + ": " + e.getMessage(), e);
+        }
     }
 
-    public void setGratitude(String gratitude) {
+    public synchronized void setGratitude(String gratitude) {
         this.gratitude = gratitude;
+        this.gratitudeLoaded = true;
+    }
+
+    public String loadGratitude() throws SQLException {
+        GratitudeLoader loader;
+        synchronized (this) {
+            if (gratitudeLoaded || gratitudeLoader == null) {
+                return gratitude;
+            }
+            loader = gratitudeLoader;
+        }
+        // Query without holding the lock, so painting the preview never waits on the database
+        String text = loader.load(date);
+        synchronized (this) {
+            if (!gratitudeLoaded) {
+                setGratitude(text);
+            }
+            return gratitude;
+        }
+    }
+
+    public synchronized boolean isGratitudeLoaded() {
+        return gratitudeLoaded || gratitudeLoader == null;
+    }
+
+    public synchronized String getGratitudePreview() {
+        if (gratitudePreview != null) {
+            return gratitudePreview;
+        }
+        if (gratitude != null && gratitude.length() > PREVIEW_LENGTH) {
+            return gratitude.substring(0, PREVIEW_LENGTH);
+        }
+        return gratitude;
+    }
+
+    public synchronized void setGratitudePreview(String gratitudePreview) {
+        this.gratitudePreview = gratitudePreview;
+    }
+
+    public synchronized void setGratitudeLoader(GratitudeLoader gratitudeLoader) {
+        this.gratitudeLoader = gratitudeLoader;
     }
 
     public LocalDate getDate() {
@@ -49,4 +133,9 @@ public class Mood {
     public void setDate(LocalDate date) {
         this.date = date;
     }
+
+    @FunctionalInterface
+    public interface GratitudeLoader {
+        String load(LocalDate date) throws SQLException;
+    }
 }
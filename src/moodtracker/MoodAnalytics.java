@@ -0,0 +1,343 @@
+package moodtracker;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+/**
+ * Computes {@link MoodInsights} over the whole history. The first report streams every
+ * entry once and hands each calendar month to a fork-join pool as soon as it has been
+ * read, so tokenizing and counting run in parallel with the query; each month keeps its
+ * own primitive counters. Those are cached per {@link MoodStore}, and
+ * {@link MoodRepository} marks the months each write touches, so later reports re-read
+ * and recount only those months before merging all months pairwise on the pool.
+ */
+public final class MoodAnalytics {
+    // One pool for every store's analytics
+    private static final ForkJoinPool POOL = newPool();
+    // Keyed by identity: two repositories over the same store must share one cache
+    private static final Map<MoodStore, MoodAnalytics> BY_STORE = new IdentityHashMap<>();
+    // Months merged sequentially by one fork-join leaf
+    private static final int MERGE_LEAF_MONTHS = 16;
+    // Words need this many entries before they are ranked, so one-off words do not dominate
+    private static final int MIN_WORD_ENTRIES = AppConfig.getInt("moodtracker.analytics.minWordEntries", 5);
+    // Weight, in entries, of the overall average in a word's smoothed average
+    private static final double WORD_PRIOR_ENTRIES = 5;
+
+    private final ForkJoinPool pool;
+    // Months counted so far; months without entries are absent. Guarded by this
+    private final Map<YearMonth, Counters> months = new HashMap<>();
+    private final Set<YearMonth> changedMonths = ConcurrentHashMap.newKeySet();
+    private volatile boolean rebuildNeeded = true;
+    // Guarded by this; null once anything was recounted
+    private MoodInsights insights;
+
+    MoodAnalytics(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * The analytics of the default store ({@link MoodStores#getDefault()}).
+     */
+    public static MoodAnalytics getShared() {
+        return of(new MoodRepository());
+    }
+
+    /**
+     * The analytics of the store behind the given repository, which marks the months
+     * each of its writes touches.
+     */
+    public static MoodAnalytics of(MoodRepository repository) {
+        synchronized (BY_STORE) {
+            return BY_STORE.computeIfAbsent(repository.getStore(), store -> new MoodAnalytics(POOL));
+        }
+    }
+
+    /**
+     * Brings the cached months up to date with the store and returns the insights. The
+     * first call reads every entry; later ones only the months changed since. Blocks, so
+     * call it off the event dispatch thread.
+     */
+    public synchronized MoodInsights analyze(MoodRepository repository) throws SQLException {
+        if (rebuildNeeded) {
+            rebuildNeeded = false;
+            // Changes made while the history streams are recounted below
+            changedMonths.clear();
+            try {
+                rebuild(repository);
+            } catch (SQLException | RuntimeException e) {
+                rebuildNeeded = true;
+                throw e;
+            }
+        }
+        if (!changedMonths.isEmpty()) {
+            List<YearMonth> changed = new ArrayList<>(changedMonths);
+            changedMonths.removeAll(changed);
+            try {
+                recount(repository, changed);
+            } catch (SQLException | RuntimeException e) {
+                changedMonths.addAll(changed);
+                throw e;
+            }
+        }
+        if (insights == null) {
+            insights = merge();
+        }
+        return insights;
+    }
+
+    void invalidate(MoodChangeEvent event) {
+        if (event.getType() == MoodChangeEvent.Type.IMPORTED) {
+            rebuildNeeded = true;
+        } else {
+            changedMonths.add(YearMonth.from(event.getDate()));
+        }
+    }
+
+    private void rebuild(MoodRepository repository) throws SQLException {
+        months.clear();
+        insights = null;
+        MonthSplitter splitter = new MonthSplitter();
+        repository.forEachFullEntry(splitter);
+        splitter.finish();
+    }
+
+    private void recount(MoodRepository repository, List<YearMonth> changed) throws SQLException {
+        List<ForkJoinTask<Counters>> tasks = new ArrayList<>(changed.size());
+        for (YearMonth month : changed) {
+            List<Mood> entries = repository.getMoodsBetween(month.atDay(1), month.atEndOfMonth());
+            for (Mood mood : entries) {
+                mood.loadGratitude(); // Here rather than on the pool, which must not block on the database
+            }
+            tasks.add(pool.submit(() -> Counters.of(entries)));
+        }
+        for (int i = 0; i < tasks.size(); i++) {
+            Counters counters = tasks.get(i).join();
+            if (counters.entries == 0) {
+                months.remove(changed.get(i));
+            } else {
+                months.put(changed.get(i), counters);
+            }
+        }
+        insights = null;
+    }
+
+    private MoodInsights merge() {
+        Counters total = months.isEmpty()
+                ? new Counters()
+                : pool.invoke(new MergeTask(months.values().toArray(new Counters[0]), 0, months.size()));
+        double average = total.entries == 0 ? 0 : (double) total.ratingSum / total.entries;
+        List<MoodInsights.WordInsight> words = new ArrayList<>();
+        for (Map.Entry<String, int[]> word : total.words.entrySet()) {
+            int entries = word.getValue()[0];
+            if (entries < MIN_WORD_ENTRIES) {
+                continue;
+            }
+            int ratingSum = word.getValue()[1];
+            double smoothed = (ratingSum + WORD_PRIOR_ENTRIES * average) / (entries + WORD_PRIOR_ENTRIES);
+            words.add(new MoodInsights.WordInsight(word.getKey(), entries, (double) ratingSum / entries,
+                    smoothed - average));
+        }
+        words.sort(Comparator.comparingDouble(MoodInsights.WordInsight::getRatingLift).reversed()
+                .thenComparing(MoodInsights.WordInsight::getWord));
+        return new MoodInsights(total.entries, total.ratingSum, total.weekdayEntries, total.weekdayRatingSums,
+                total.weekdayMoodCounts, total.monthEntries, total.monthRatingSums, total.monthMoodCounts, words);
+    }
+
+    private static ForkJoinPool newPool() {
+        int parallelism = AppConfig.getInt("moodtracker.analytics.threads", Runtime.getRuntime().availableProcessors());
+        return new ForkJoinPool(Math.max(1, parallelism), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("mood-analytics-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Cuts the date-ordered stream into calendar months and submits each one for
+     * counting as soon as it is complete. Only a few months wait on the pool at a time,
+     * so a slow pool holds back the stream rather than filling memory with entries.
+     */
+    private final class MonthSplitter implements Consumer<Mood> {
+        private final int maxPending = pool.getParallelism() * 4;
+        private final Deque<ForkJoinTask<Counters>> pending = new ArrayDeque<>();
+        private final Deque<YearMonth> pendingMonths = new ArrayDeque<>();
+        private YearMonth month;
+        private List<Mood> entries = new ArrayList<>();
+
+        @Override
+        public void accept(Mood mood) {
+            YearMonth entryMonth = YearMonth.from(mood.getDate());
+            if (!entryMonth.equals(month)) {
+                submit();
+                month = entryMonth;
+            }
+            entries.add(mood);
+        }
+
+        void finish() {
+            submit();
+            while (!pending.isEmpty()) {
+                collect();
+            }
+        }
+
+        private void submit() {
+            if (entries.isEmpty()) {
+                return;
+            }
+            List<Mood> chunk = entries;
+            entries = new ArrayList<>();
+            pending.add(pool.submit(() -> Counters.of(chunk)));
+            pendingMonths.add(month);
+            while (pending.size() > maxPending) {
+                collect();
+            }
+        }
+
+        private void collect() {
+            months.put(pendingMonths.poll(), pending.poll().join());
+        }
+    }
+
+    /**
+     * Sums months by splitting the range in halves until a leaf is small enough to add up
+     * on one thread. Every leaf starts from fresh counters, so the cached months are only read.
+     */
+    private static final class MergeTask extends RecursiveTask<Counters> {
+        private final Counters[] months;
+        private final int from;
+        private final int to;
+
+        MergeTask(Counters[] months, int from, int to) {
+            this.months = months;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Counters compute() {
+            if (to - from <= MERGE_LEAF_MONTHS) {
+                Counters total = new Counters();
+                for (int i = from; i < to; i++) {
+                    total.add(months[i]);
+                }
+                return total;
+            }
+            int middle = (from + to) >>> 1;
+            MergeTask right = new MergeTask(months, middle, to);
+            right.fork();
+            Counters left = new MergeTask(months, from, middle).compute();
+            return Counters.combine(left, right.join());
+        }
+    }
+
+    /**
+     * Counts for a set of entries, in primitive arrays indexed by weekday (Monday first)
+     * or month of the year, and mood ordinal within those. Each gratitude word maps to
+     * the number of entries that mention it and the sum of their ratings.
+     */
+    private static final class Counters {
+        private int entries;
+        private long ratingSum;
+        private final int[] weekdayEntries = new int[7];
+        private final long[] weekdayRatingSums = new long[7];
+        private final int[] weekdayMoodCounts = new int[7 * MoodType.count()];
+        private final int[] monthEntries = new int[12];
+        private final long[] monthRatingSums = new long[12];
+        private final int[] monthMoodCounts = new int[12 * MoodType.count()];
+        private final Map<String, int[]> words = new HashMap<>();
+
+        static Counters of(List<Mood> moods) {
+            Counters counters = new Counters();
+            Set<String> distinct = new HashSet<>();
+            for (Mood mood : moods) {
+                counters.count(mood, distinct);
+            }
+            return counters;
+        }
+
+        static Counters combine(Counters a, Counters b) {
+            // Fold the smaller vocabulary into the larger one
+            if (a.words.size() < b.words.size()) {
+                b.add(a);
+                return b;
+            }
+            a.add(b);
+            return a;
+        }
+
+        private void count(Mood mood, Set<String> distinct) {
+            LocalDate date = mood.getDate();
+            MoodType type = mood.getMoodType() != null ? mood.getMoodType() : MoodType.fromName(mood.getMood());
+            int rating = mood.getRating();
+            int weekday = date.getDayOfWeek().ordinal();
+            int month = date.getMonthValue() - 1;
+            entries++;
+            ratingSum += rating;
+            weekdayEntries[weekday]++;
+            weekdayRatingSums[weekday] += rating;
+            monthEntries[month]++;
+            monthRatingSums[month] += rating;
+            if (type != null) {
+                weekdayMoodCounts[weekday * MoodType.count() + type.ordinal()]++;
+                monthMoodCounts[month * MoodType.count() + type.ordinal()]++;
+            }
+            distinct.clear();
+            distinct.addAll(GratitudeTokenizer.tokenize(mood.getGratitude()));
+            for (String word : distinct) {
+                int[] counts = words.computeIfAbsent(word, w -> new int[2]);
+                counts[0]++;
+                counts[1] += rating;
+            }
+        }
+
+        private void add(Counters other) {
+            entries += other.entries;
+            ratingSum += other.ratingSum;
+            addAll(weekdayEntries, other.weekdayEntries);
+            addAll(weekdayRatingSums, other.weekdayRatingSums);
+            addAll(weekdayMoodCounts, other.weekdayMoodCounts);
+            addAll(monthEntries, other.monthEntries);
+            addAll(monthRatingSums, other.monthRatingSums);
+            addAll(monthMoodCounts, other.monthMoodCounts);
+            for (Map.Entry<String, int[]> word : other.words.entrySet()) {
+                int[] counts = words.get(word.getKey());
+                if (counts == null) {
+                    words.put(word.getKey(), word.getValue().clone());
+                } else {
+                    counts[0] += word.getValue()[0];
+                    counts[1] += word.getValue()[1];
+                }
+            }
+        }
+
+        private static void addAll(int[] into, int[] from) {
+            for (int i = 0; i < into.length; i++) {
+                into[i] += from[i];
+            }
+        }
+
+        private static void addAll(long[] into, long[] from) {
+            for (int i = 0; i < into.length; i++) {
+                into[i] += from[i];
+            }
+        }
+    }
+}
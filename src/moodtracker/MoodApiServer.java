@@ -0,0 +1,404 @@
+package moodtracker;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless JSON HTTP API over {@link MoodRepository}, on the JDK's built-in HTTP server
+ * with one virtual thread per request (a cached thread pool before JDK 21). Started
+ * with {@code MoodTrackerApp --server}, or this class's own {@code main}.
+ *
+ * <pre>
+ * GET    /api/moods?from=2024-01-01&amp;to=2024-01-31   summaries in a date range
+ * GET    /api/moods?after=2024-01-31&amp;limit=100      summaries in date order, one page at a time
+ * GET    /api/moods/2024-01-15                      one entry, gratitude included
+ * POST   /api/moods                                 create {"date","mood","rating","gratitude"}; 409 if the day has one
+ * PUT    /api/moods/2024-01-15                      create or overwrite {"mood","rating","gratitude"}
+ * DELETE /api/moods/2024-01-15
+ * GET    /api/health
+ * GET    /api/metrics                               {@link Metrics#report()} as text
+ * </pre>
+ *
+ * <p>Requests are admitted in two stages so overload is answered quickly instead of
+ * piling up: at most {@code moodtracker.server.maxConcurrent} run at once, at most
+ * {@code moodtracker.server.maxQueued} more wait up to
+ * {@code moodtracker.server.queueTimeoutMs} for a slot, and anything beyond that gets
+ * 503 with a Retry-After header.
+ */
+public final class MoodApiServer {
+    private static final String MOODS = "/api/moods";
+    private static final int DEFAULT_PAGE = 100;
+    private static final int MAX_PAGE = 1000;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+
+    static {
+        // Small responses otherwise sit in Nagle's buffer waiting on the client's delayed ACK,
+        // capping each keep-alive connection at a few dozen requests a second. Read once, when
+        // the JDK server classes load, so it has to be set before the first HttpServer.create
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final MoodRepository repository;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Semaphore admitted;
+    private final Semaphore running;
+    private final long queueTimeoutMs;
+
+    public MoodApiServer(MoodRepository repository, int port) throws IOException {
+        this(repository, port, AppConfig.getInt("moodtracker.server.maxConcurrent", 64),
+                AppConfig.getInt("moodtracker.server.maxQueued", 1024),
+                AppConfig.getLong("moodtracker.server.queueTimeoutMs", 2_000));
+    }
+
+    public MoodApiServer(MoodRepository repository, int port, int maxConcurrent, int maxQueued, long queueTimeoutMs)
+            throws IOException {
+        this.repository = repository;
+        this.running = new Semaphore(Math.max(1, maxConcurrent));
+        this.admitted = new Semaphore(Math.max(1, maxConcurrent) + Math.max(0, maxQueued));
+        this.queueTimeoutMs = queueTimeoutMs;
+        this.server = HttpServer.create(new InetSocketAddress(port), AppConfig.getInt("moodtracker.server.backlog", 1024));
+        this.executor = AsyncMoodRepository.newBlockingExecutor("mood-http");
+        server.setExecutor(executor);
+        server.createContext("/api/", this::handle);
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int port = AppConfig.getInt("moodtracker.server.port", 8080);
+        try {
+            MoodApiServer server = new MoodApiServer(new MoodRepository(), port);
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "mood-http-shutdown"));
+            System.out.println("Mood API listening on port " + server.getPort());
+        } catch (IOException e) {
+            System.err.println("Could not start the mood API on port " + port + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, gives running ones a second to finish, and stops.
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            Response response;
+            if (!admitted.tryAcquire()) {
+                sendOverloaded(exchange);
+                return;
+            }
+            try {
+                if (!running.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    sendOverloaded(exchange);
+                    return;
+                }
+                try {
+                    response = route(exchange);
+                } finally {
+                    running.release();
+                }
+            } finally {
+                admitted.release();
+            }
+            send(exchange, response.status, response.contentType, response.body);
+        } catch (ApiError e) {
+            sendError(exchange, e.status, e.getMessage());
+        } catch (SQLException e) {
+            if (e instanceof SQLIntegrityConstraintViolationException
+                    || (e.getSQLState() != null && e.getSQLState().startsWith("23"))) {
+                sendError(exchange, 409, "The entry conflicts with an existing one");
+            } else {
+                // Driver messages can name tables and hosts, so they stay in the server log
+                e.printStackTrace();
+                sendError(exchange, 500, "Internal error");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sendOverloaded(exchange);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            sendError(exchange, 500, "Internal error");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Response route(HttpExchange exchange) throws SQLException {
+        String path = exchange.getRequestURI().getPath();
+        String method = exchange.getRequestMethod();
+        if ("/api/health".equals(path)) {
+            requireMethod(method, "GET");
+            return Response.json(200, "{\"status\":\"ok\"}");
+        }
+        if ("/api/metrics".equals(path)) {
+            requireMethod(method, "GET");
+            return new Response(200, "text/plain; charset=utf-8", Metrics.report());
+        }
+        if (MOODS.equals(path)) {
+            if ("GET".equals(method)) {
+                return listMoods(exchange);
+            }
+            requireMethod(method, "POST");
+            return createMood(exchange);
+        }
+        if (path.startsWith(MOODS + "/")) {
+            LocalDate date = parseDate(path.substring(MOODS.length() + 1), "date");
+            switch (method) {
+                case "GET":
+                    List<Mood> moods = repository.getMoodsByDate(date);
+                    if (moods.isEmpty()) {
+                        throw new ApiError(404, "No mood entry for " + date);
+                    }
+                    return Response.json(200, appendMood(new StringBuilder(), moods.get(0), true).toString());
+                case "PUT":
+                    MoodWrite write = readEntry(exchange, date);
+                    repository.upsertMoodEntry(date, write.getMood(), write.getGratitude(), write.getRating());
+                    return Response.json(200, appendWrite(new StringBuilder(), write).toString());
+                case "DELETE":
+                    repository.deleteMoodEntryByDate(date);
+                    return Response.json(204, null);
+                default:
+                    throw new ApiError(405, "Method " + method + " not allowed");
+            }
+        }
+        throw new ApiError(404, "Not found: " + path);
+    }
+
+    private Response listMoods(HttpExchange exchange) throws SQLException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        List<Mood> moods;
+        if (query.containsKey("from") || query.containsKey("to")) {
+            LocalDate from = parseDate(query.get("from"), "from");
+            LocalDate to = parseDate(query.get("to"), "to");
+            if (to.isBefore(from)) {
+                throw new ApiError(400, "'to' is before 'from'");
+            }
+            moods = repository.getMoodsBetween(from, to);
+        } else {
+            LocalDate after = query.containsKey("after") ? parseDate(query.get("after"), "after") : null;
+            int limit = DEFAULT_PAGE;
+            if (query.containsKey("limit")) {
+                try {
+                    limit = Integer.parseInt(query.get("limit"));
+                } catch (NumberFormatException e) {
+                    throw new ApiError(400, "Invalid limit '" + query.get("limit") + "'");
+                }
+                if (limit < 1 || limit > MAX_PAGE) {
+                    throw new ApiError(400, "limit must be between 1 and " + MAX_PAGE);
+                }
+            }
+            moods = repository.getEntriesAfter(after, limit);
+        }
+        StringBuilder json = new StringBuilder(32 + moods.size() * 48).append('[');
+        for (int i = 0; i < moods.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendMood(json, moods.get(i), false);
+        }
+        return Response.json(200, json.append(']').toString());
+    }
+
+    private Response createMood(HttpExchange exchange) throws SQLException {
+        MoodWrite write = readEntry(exchange, null);
+        // The store refuses a second entry for the day, so two racing requests cannot both succeed
+        try {
+            repository.saveMoodEntry(write.getDate(), write.getMood(), write.getGratitude(), write.getRating());
+        } catch (SQLIntegrityConstraintViolationException e) {
+            throw new ApiError(409, "A mood entry for " + write.getDate() + " already exists");
+        }
+        return Response.json(201, appendWrite(new StringBuilder(), write).toString());
+    }
+
+    // The entry in the request body; the date comes from the path when there is one
+    private static MoodWrite readEntry(HttpExchange exchange, LocalDate pathDate) {
+        Map<String, Object> body;
+        try {
+            body = Json.parseObject(readBody(exchange));
+        } catch (IllegalArgumentException e) {
+            throw new ApiError(400, "Invalid JSON: " + e.getMessage());
+        }
+        LocalDate date = pathDate != null ? pathDate : parseDate(string(body.get("date")), "date");
+        MoodType type = MoodType.fromName(string(body.get("mood")));
+        if (type == null) {
+            throw new ApiError(400, "Unknown mood '" + body.get("mood") + "'");
+        }
+        Object rating = body.get("rating");
+        if (!(rating instanceof Long) || (Long) rating < 1 || (Long) rating > 5) {
+            throw new ApiError(400, "rating must be a whole number from 1 to 5");
+        }
+        return MoodWrite.upsert(date, type.getDisplayName(), string(body.get("gratitude")), ((Long) rating).intValue());
+    }
+
+    private static String readBody(HttpExchange exchange) {
+        try (InputStream in = exchange.getRequestBody()) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+                if (body.size() > MAX_BODY_BYTES) {
+                    throw new ApiError(413, "Request body over " + MAX_BODY_BYTES + " bytes");
+                }
+            }
+            return new String(body.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new ApiError(400, "Could not read request body: " + e.getMessage());
+        }
+    }
+
+    private static StringBuilder appendMood(StringBuilder json, Mood mood, boolean withGratitude) {
+        json.append("{\"date\":\"").append(mood.getDate()).append("\",\"mood\":");
+        Json.appendString(json, mood.getMood());
+        json.append(",\"rating\":").append(mood.getRating());
+        if (withGratitude) {
+            json.append(",\"gratitude\":");
+            Json.appendString(json, mood.getGratitude());
+        }
+        return json.append('}');
+    }
+
+    private static StringBuilder appendWrite(StringBuilder json, MoodWrite write) {
+        json.append("{\"date\":\"").append(write.getDate()).append("\",\"mood\":");
+        Json.appendString(json, write.getMood());
+        json.append(",\"rating\":").append(write.getRating()).append(",\"gratitude\":");
+        Json.appendString(json, write.getGratitude());
+        return json.append('}');
+    }
+
+    private static LocalDate parseDate(String value, String name) {
+        if (value == null || value.isEmpty()) {
+            throw new ApiError(400, "Missing " + name);
+        }
+        LocalDate date;
+        try {
+            date = LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new ApiError(400, "Invalid " + name + " '" + value + "', expected yyyy-MM-dd");
+        }
+        if (date.isBefore(Mood.MIN_DATE) || date.isAfter(Mood.MAX_DATE)) {
+            throw new ApiError(400, name + " must be between " + Mood.MIN_DATE + " and " + Mood.MAX_DATE);
+        }
+        return date;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            query.put(decode(name), decode(value));
+        }
+        return query;
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            throw new ApiError(400, "Malformed query string");
+        }
+    }
+
+    private static String string(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    private static void requireMethod(String method, String allowed) {
+        if (!allowed.equals(method)) {
+            throw new ApiError(405, "Method " + method + " not allowed");
+        }
+    }
+
+    private static void sendOverloaded(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        sendError(exchange, 503, "Server busy, try again shortly");
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        Json.appendString(json, message);
+        send(exchange, status, json.append('}').toString());
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        send(exchange, status, "application/json; charset=utf-8", json);
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static final class Response {
+        private final int status;
+        private final String contentType;
+        private final String body;
+
+        Response(int status, String contentType, String body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        static Response json(int status, String body) {
+            return new Response(status, "application/json; charset=utf-8", body);
+        }
+    }
+
+    // A request the client got wrong, answered with the given status instead of 500
+    private static final class ApiError extends RuntimeException {
+        private final int status;
+
+        ApiError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package moodtracker;
+
+import javax.swing.SwingUtilities;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Process-wide notification of committed mood changes, so every open window can patch
+ * its view of the one entry that changed instead of reloading. {@link MoodRepository}
+ * publishes on the thread that made the write; UI code should use
+ * {@link #subscribeOnEdt}, which batches events until the event dispatch thread gets
+ * to them.
+ */
+public final class MoodChangeBus {
+    private static final MoodChangeBus SHARED = new MoodChangeBus();
+
+    private final List<Consumer<MoodChangeEvent>> subscribers = new CopyOnWriteArrayList<>();
+
+    public static MoodChangeBus getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Calls the subscriber for every event, on the publishing thread.
+     */
+    public Subscription subscribe(Consumer<MoodChangeEvent> subscriber) {
+        subscribers.add(subscriber);
+        return () -> subscribers.remove(subscriber);
+    }
+
+    /**
+     * Calls the subscriber on the event dispatch thread with the events published since
+     * its last call, keeping only the latest event per date. An IMPORTED event replaces
+     * the whole batch, since the subscriber has to re-read everything anyway.
+     */
+    public Subscription subscribeOnEdt(Consumer<List<MoodChangeEvent>> subscriber) {
+        EdtBatcher batcher = new EdtBatcher(subscriber);
+        subscribers.add(batcher);
+        return () -> {
+            batcher.cancelled = true;
+            subscribers.remove(batcher);
+        };
+    }
+
+    public void publish(MoodChangeEvent event) {
+        for (Consumer<MoodChangeEvent> subscriber : subscribers) {
+            try {
+                subscriber.accept(event);
+            } catch (RuntimeException e) {
+                // One broken view must not stop the others, nor fail the write that was already committed
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Subscription {
+        void cancel();
+    }
+
+    static List<MoodChangeEvent> coalesce(List<MoodChangeEvent> events) {
+        Map<LocalDate, MoodChangeEvent> latest = new LinkedHashMap<>();
+        for (MoodChangeEvent event : events) {
+            if (event.getType() == MoodChangeEvent.Type.IMPORTED) {
+                return Collections.singletonList(event);
+            }
+            // Re-inserting moves the date to the end, so the batch stays in commit order
+            latest.remove(event.getDate());
+            latest.put(event.getDate(), event);
+        }
+        return new ArrayList<>(latest.values());
+    }
+
+    private static final class EdtBatcher implements Consumer<MoodChangeEvent> {
+        private final Consumer<List<MoodChangeEvent>> subscriber;
+        private List<MoodChangeEvent> pending = new ArrayList<>();
+        private boolean scheduled;
+        private volatile boolean cancelled;
+
+        EdtBatcher(Consumer<List<MoodChangeEvent>> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public synchronized void accept(MoodChangeEvent event) {
+            pending.add(event);
+            if (!scheduled) {
+                scheduled = true;
+                SwingUtilities.invokeLater(this::deliver);
+            }
+        }
+
+        private void deliver() {
+            List<MoodChangeEvent> batch;
+            synchronized (this) {
+                batch = pending;
+                pending = new ArrayList<>();
+                scheduled = false;
+            }
+            if (!cancelled) {
+                subscriber.accept(coalesce(batch));
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package moodtracker;
+
+import java.time.LocalDate;
+
+/**
+ * A committed change to the mood history, published by {@link MoodRepository} on
+ * {@link MoodChangeBus} after the store and the shared in-memory indexes were updated.
+ */
+public final class MoodChangeEvent {
+
+    public enum Type {
+        /** The entry was inserted or overwritten. */
+        SAVED,
+        /** The existing entry, if any, was overwritten. */
+        UPDATED,
+        DELETED,
+        /** Many entries changed at once (a bulk import); views should re-read everything. */
+        IMPORTED
+    }
+
+    private final Type type;
+    private final LocalDate date;
+    private final Mood mood;
+
+    private MoodChangeEvent(Type type, LocalDate date, Mood mood) {
+        this.type = type;
+        this.date = date;
+        this.mood = mood;
+    }
+
+    static MoodChangeEvent saved(Mood mood) {
+        return new MoodChangeEvent(Type.SAVED, mood.getDate(), mood);
+    }
+
+    static MoodChangeEvent updated(Mood mood) {
+        return new MoodChangeEvent(Type.UPDATED, mood.getDate(), mood);
+    }
+
+    static MoodChangeEvent deleted(LocalDate date) {
+        return new MoodChangeEvent(Type.DELETED, date, null);
+    }
+
+    static MoodChangeEvent imported() {
+        return new MoodChangeEvent(Type.IMPORTED, null, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    // Date of the changed entry; null for IMPORTED
+    public LocalDate getDate() {
+        return date;
+    }
+
+    // The entry as written, gratitude included; null for DELETED and IMPORTED
+    public Mood getMood() {
+        return mood;
+    }
+
+    @Override
+    public String toString() {
+        return type + (date != null ? " " + date : "");
+    }
+}
@@ -0,0 +1,70 @@
+package moodtracker;
+
+import com.toedter.calendar.IDateEvaluator;
+
+import java.awt.Color;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.function.Supplier;
+
+/**
+ * Colours the {@link com.toedter.calendar.JDayChooser} days logged with one mood. Each
+ * day is looked up in the shared {@link MoodIndex}, so repainting a month (including
+ * after month navigation) never touches the database. The selected day is left alone
+ * so the chooser's selection colour stays visible.
+ */
+final class MoodDayEvaluator implements IDateEvaluator {
+    private final MoodType mood;
+    private final Supplier<LocalDate> selectedDate;
+
+    MoodDayEvaluator(MoodType mood, Supplier<LocalDate> selectedDate) {
+        this.mood = mood;
+        this.selectedDate = selectedDate;
+    }
+
+    @Override
+    public boolean isSpecial(Date date) {
+        LocalDate day = date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+        if (day.equals(selectedDate.get())) {
+            return false;
+        }
+        return MoodIndex.getShared().moodOrdinalAt(day.toEpochDay()) == mood.ordinal();
+    }
+
+    @Override
+    public Color getSpecialForegroundColor() {
+        return Color.BLACK;
+    }
+
+    @Override
+    public Color getSpecialBackroundColor() {
+        return mood.getColor();
+    }
+
+    // JDayChooser never clears tooltips on ordinary days, so one set here would go stale
+    @Override
+    public String getSpecialTooltip() {
+        return null;
+    }
+
+    @Override
+    public boolean isInvalid(Date date) {
+        return false;
+    }
+
+    @Override
+    public Color getInvalidForegroundColor() {
+        return null;
+    }
+
+    @Override
+    public Color getInvalidBackroundColor() {
+        return null;
+    }
+
+    @Override
+    public String getInvalidTooltip() {
+        return null;
+    }
+}
@@ -0,0 +1,65 @@
+package moodtracker;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Custom Flight Recorder events. Record with
+ * {@code -XX:StartFlightRecording=filename=mood.jfr} and open the file in JDK Mission
+ * Control; the events appear under the "Mood Tracker" category.
+ */
+final class MoodEvents {
+
+    private MoodEvents() {
+    }
+
+    @Name("moodtracker.RepositoryCall")
+    @Label("Repository Call")
+    @Category("Mood Tracker")
+    @Description("A MoodRepository operation and the rows it returned")
+    static final class RepositoryCall extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Rows")
+        int rows;
+
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+
+    @Name("moodtracker.ConnectionAcquire")
+    @Label("Connection Acquire")
+    @Category("Mood Tracker")
+    @Description("Time spent obtaining a connection from the pool, including any new connection setup")
+    static final class ConnectionAcquire extends Event {
+        @Label("Created New Connection")
+        boolean created;
+    }
+
+    @Name("moodtracker.UiHandler")
+    @Label("UI Handler")
+    @Category("Mood Tracker")
+    @Description("Time a Swing event handler ran on the event dispatch thread")
+    static final class UiHandler extends Event {
+        @Label("Handler")
+        String handler;
+    }
+
+    @Name("moodtracker.EdtStall")
+    @Label("EDT Stall")
+    @Category("Mood Tracker")
+    @Description("The event dispatch thread did not process events for longer than the stall threshold")
+    static final class EdtStall extends Event {
+        @Label("Stall")
+        @Timespan(Timespan.MILLISECONDS)
+        long stallMillis;
+
+        @Label("EDT Stack")
+        String stack;
+    }
+}
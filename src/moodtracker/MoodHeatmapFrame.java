@@ -0,0 +1,71 @@
+package moodtracker;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+
+public class MoodHeatmapFrame extends JFrame {
+    private final MoodHeatmapPanel heatmapPanel = new MoodHeatmapPanel(new AsyncMoodRepository());
+
+    public MoodHeatmapFrame() {
+        // Frame settings
+        setTitle("Mood Heatmap");
+        setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        setLayout(new BorderLayout());
+
+        // One tile per year, newest first
+        JScrollPane scrollPane = new JScrollPane(heatmapPanel);
+        scrollPane.getViewport().setBackground(heatmapPanel.getBackground());
+        add(scrollPane, BorderLayout.CENTER);
+
+        // Legend: one swatch per mood, plus one for unrecognised names; paler cells were rated lower
+        JPanel legendPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        for (MoodType mood : MoodType.values()) {
+            JLabel swatch = new JLabel(mood.getDisplayName());
+            swatch.setIcon(new ColorIcon(mood.getColor()));
+            legendPanel.add(swatch);
+        }
+        JLabel otherSwatch = new JLabel(MoodHeatmapPanel.OTHER_LABEL);
+        otherSwatch.setIcon(new ColorIcon(MoodHeatmapPanel.OTHER_COLOR));
+        legendPanel.add(otherSwatch);
+        legendPanel.add(new JLabel("  Paler = lower rating"));
+        add(legendPanel, BorderLayout.SOUTH);
+
+        pack();
+        setLocationRelativeTo(null);
+        setVisible(true);
+        // Each change only redraws the year it falls in
+        MoodChangeBus.Subscription changes = MoodChangeBus.getShared().subscribeOnEdt(heatmapPanel::applyChanges);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                changes.cancel();
+            }
+        });
+    }
+
+    private static final class ColorIcon implements Icon {
+        private final Color color;
+
+        ColorIcon(Color color) {
+            this.color = color;
+        }
+
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            g.setColor(color);
+            g.fillRect(x, y, getIconWidth(), getIconHeight());
+        }
+
+        @Override
+        public int getIconWidth() {
+            return 11;
+        }
+
+        @Override
+        public int getIconHeight() {
+            return 11;
+        }
+    }
+}
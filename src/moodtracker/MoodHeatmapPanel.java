@@ -0,0 +1,372 @@
+package moodtracker;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+import java.time.format.TextStyle;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One row of day cells per year, newest year on top, each day coloured by its mood (grey
+ * for a mood name that is not a {@link MoodType}) and shaded lighter the lower it was
+ * rated. Every year is fetched with a single range query and drawn once into an
+ * off-screen image; painting only copies the images of the years in view, so scrolling
+ * costs the same however many years there are. A change redraws just the year it falls
+ * in. Used on the EDT only.
+ */
+public class MoodHeatmapPanel extends JPanel implements Scrollable {
+    private static final int CELL = 11;
+    private static final int STEP = CELL + 2;
+    private static final int WEEKS = 54; // A leap year starting on a Sunday touches 54 Monday-first weeks
+    private static final int LABEL_WIDTH = 34;
+    private static final int HEADER_HEIGHT = 32;
+    private static final int TILE_WIDTH = LABEL_WIDTH + WEEKS * STEP + 8;
+    private static final int TILE_HEIGHT = HEADER_HEIGHT + 7 * STEP + 14;
+    private static final Color EMPTY_COLOR = new Color(235, 237, 240);
+    /** Colour of days logged with a mood name that is not a {@link MoodType}. */
+    static final Color OTHER_COLOR = new Color(140, 140, 140);
+    static final String OTHER_LABEL = "Other";
+    // Day code of an OTHER_COLOR day; the stored name is kept alongside
+    private static final byte OTHER_MOOD = 0x7F;
+    private static final Color LABEL_COLOR = new Color(90, 90, 90);
+    private static final Font YEAR_FONT = new Font("Arial", Font.BOLD, 13);
+    private static final Font LABEL_FONT = new Font("Arial", Font.PLAIN, 10);
+
+    private final AsyncMoodRepository moodRepository;
+    private final Map<Integer, YearData> years = new HashMap<>();
+    private final Map<Integer, BufferedImage> tiles = new HashMap<>();
+    private final Set<Integer> loading = new HashSet<>();
+    // Years whose query may have run before a change it has not seen
+    private final Set<Integer> staleLoads = new HashSet<>();
+    private int firstYear = Year.now().getValue();
+    // Tiles are drawn at the device scale so they stay sharp on HiDPI screens
+    private double tileScale = 1;
+    private int generation;
+
+    public MoodHeatmapPanel(AsyncMoodRepository moodRepository) {
+        this.moodRepository = moodRepository;
+        setBackground(Color.WHITE);
+        setToolTipText(""); // Registers with the tooltip manager; the text comes from getToolTipText(MouseEvent)
+        loadFirstYear();
+    }
+
+    /**
+     * Applies committed changes to the years already loaded and redraws only their tiles.
+     * An import may touch any year, so it starts over.
+     */
+    public void applyChanges(List<MoodChangeEvent> events) {
+        for (MoodChangeEvent event : events) {
+            if (event.getType() == MoodChangeEvent.Type.IMPORTED) {
+                reload();
+                return;
+            }
+        }
+        int oldFirstYear = firstYear;
+        for (MoodChangeEvent event : events) {
+            LocalDate date = event.getDate();
+            int year = date.getYear();
+            firstYear = Math.min(firstYear, year);
+            if (loading.contains(year)) {
+                staleLoads.add(year);
+                continue;
+            }
+            YearData data = years.get(year);
+            if (data == null) {
+                continue; // Not fetched yet, so the fetch will see the change
+            }
+            if (event.getType() == MoodChangeEvent.Type.DELETED) {
+                data.clear(date);
+            } else {
+                data.set(date, event.getMood());
+            }
+            tiles.remove(year);
+            repaint(tileBounds(year));
+        }
+        if (firstYear != oldFirstYear) {
+            revalidate();
+            repaint();
+        }
+    }
+
+    /**
+     * Drops everything fetched and drawn so far and fetches the years in view again.
+     */
+    public void reload() {
+        generation++;
+        years.clear();
+        tiles.clear();
+        loading.clear();
+        staleLoads.clear();
+        loadFirstYear();
+        repaint();
+    }
+
+    private void loadFirstYear() {
+        int requestGeneration = generation;
+        moodRepository.getFirstEntryDate().whenCompleteAsync((first, error) -> {
+            if (requestGeneration != generation) {
+                return;
+            }
+            if (error != null) {
+                AsyncMoodRepository.unwrap(error).printStackTrace();
+                return;
+            }
+            if (first != null && first.getYear() < firstYear) {
+                firstYear = first.getYear();
+                revalidate();
+                repaint();
+            }
+        }, AsyncMoodRepository.EDT);
+    }
+
+    private void loadYear(int year) {
+        if (!loading.add(year)) {
+            return;
+        }
+        int requestGeneration = generation;
+        LocalDate from = LocalDate.of(year, 1, 1);
+        moodRepository.getMoodsBetween(from, from.plusYears(1).minusDays(1)).whenCompleteAsync((moods, error) -> {
+            if (requestGeneration != generation) {
+                return;
+            }
+            if (error != null) {
+                // Leave the year marked as loading so repaints do not hammer a failing database; reload() retries
+                AsyncMoodRepository.unwrap(error).printStackTrace();
+                return;
+            }
+            loading.remove(year);
+            if (staleLoads.remove(year)) {
+                loadYear(year);
+                return;
+            }
+            YearData data = new YearData();
+            for (Mood mood : moods) {
+                data.set(mood.getDate(), mood);
+            }
+            years.put(year, data);
+            tiles.remove(year);
+            repaint(tileBounds(year));
+        }, AsyncMoodRepository.EDT);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        double scale = ((Graphics2D) g).getTransform().getScaleX();
+        if (scale != tileScale) {
+            tiles.clear();
+            tileScale = scale;
+        }
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        int lastYear = lastYear();
+        int top = Math.max(0, clip.y / TILE_HEIGHT);
+        int bottom = Math.min(lastYear - firstYear, (clip.y + clip.height - 1) / TILE_HEIGHT);
+        for (int row = top; row <= bottom; row++) {
+            int year = lastYear - row;
+            YearData data = years.get(year);
+            if (data == null) {
+                loadYear(year);
+                paintPlaceholder(g, year, row * TILE_HEIGHT);
+                continue;
+            }
+            BufferedImage tile = tiles.get(year);
+            if (tile == null) {
+                tile = renderTile(year, data);
+                tiles.put(year, tile);
+            }
+            g.drawImage(tile, 0, row * TILE_HEIGHT, TILE_WIDTH, TILE_HEIGHT, null);
+        }
+    }
+
+    private void paintPlaceholder(Graphics g, int year, int y) {
+        g.setColor(LABEL_COLOR);
+        g.setFont(YEAR_FONT);
+        g.drawString(year + "  Loading...", 4, y + 14);
+    }
+
+    private BufferedImage renderTile(int year, YearData data) {
+        int width = (int) Math.ceil(TILE_WIDTH * tileScale);
+        int height = (int) Math.ceil(TILE_HEIGHT * tileScale);
+        GraphicsConfiguration configuration = getGraphicsConfiguration();
+        BufferedImage tile = configuration != null
+                ? configuration.createCompatibleImage(width, height)
+                : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = tile.createGraphics();
+        try {
+            g.scale(tileScale, tileScale);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setColor(getBackground());
+            g.fillRect(0, 0, TILE_WIDTH, TILE_HEIGHT);
+
+            g.setColor(LABEL_COLOR);
+            g.setFont(YEAR_FONT);
+            g.drawString(String.valueOf(year), 4, 14);
+            g.setFont(LABEL_FONT);
+            LocalDate jan1 = LocalDate.of(year, 1, 1);
+            for (Month month : Month.values()) {
+                int week = weekOf(jan1.withMonth(month.getValue()), jan1);
+                g.drawString(month.getDisplayName(TextStyle.SHORT, Locale.ENGLISH), LABEL_WIDTH + week * STEP, HEADER_HEIGHT - 4);
+            }
+            for (DayOfWeek day : new DayOfWeek[]{DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY, DayOfWeek.FRIDAY}) {
+                int rowY = HEADER_HEIGHT + (day.getValue() - 1) * STEP;
+                g.drawString(day.getDisplayName(TextStyle.SHORT, Locale.ENGLISH), 4, rowY + CELL - 1);
+            }
+
+            int length = jan1.lengthOfYear();
+            for (int dayOfYear = 1; dayOfYear <= length; dayOfYear++) {
+                LocalDate date = jan1.plusDays(dayOfYear - 1);
+                g.setColor(cellColor(data, dayOfYear));
+                g.fillRoundRect(LABEL_WIDTH + weekOf(date, jan1) * STEP,
+                        HEADER_HEIGHT + (date.getDayOfWeek().getValue() - 1) * STEP, CELL, CELL, 3, 3);
+            }
+        } finally {
+            g.dispose();
+        }
+        return tile;
+    }
+
+    // Full mood colour for a 5, fading towards the empty-cell grey for a 1
+    private static Color cellColor(YearData data, int dayOfYear) {
+        byte code = data.moods[dayOfYear - 1];
+        if (code == 0) {
+            return EMPTY_COLOR;
+        }
+        int rating = Math.max(1, Math.min(5, data.ratings[dayOfYear - 1]));
+        float strength = 0.35f + 0.65f * (rating - 1) / 4f;
+        Color color = code == OTHER_MOOD ? OTHER_COLOR : MoodType.fromOrdinal(code - 1).getColor();
+        return new Color(
+                blend(EMPTY_COLOR.getRed(), color.getRed(), strength),
+                blend(EMPTY_COLOR.getGreen(), color.getGreen(), strength),
+                blend(EMPTY_COLOR.getBlue(), color.getBlue(), strength));
+    }
+
+    private static int blend(int from, int to, float strength) {
+        return Math.round(from + (to - from) * strength);
+    }
+
+    private static int weekOf(LocalDate date, LocalDate jan1) {
+        int offset = jan1.getDayOfWeek().getValue() - 1;
+        return (date.getDayOfYear() - 1 + offset) / 7;
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent event) {
+        LocalDate date = dateAt(event.getX(), event.getY());
+        if (date == null) {
+            return null;
+        }
+        YearData data = years.get(date.getYear());
+        if (data == null) {
+            return date.toString();
+        }
+        int dayOfYear = date.getDayOfYear();
+        byte code = data.moods[dayOfYear - 1];
+        if (code == 0) {
+            return date + ": no entry";
+        }
+        String mood = code == OTHER_MOOD
+                ? data.otherMoods.get(dayOfYear - 1) : MoodType.fromOrdinal(code - 1).getDisplayName();
+        return date + ": " + mood + ", rated " + data.ratings[dayOfYear - 1] + "/5";
+    }
+
+    private LocalDate dateAt(int x, int y) {
+        int row = y / TILE_HEIGHT;
+        int year = lastYear() - row;
+        if (y < 0 || year < firstYear) {
+            return null;
+        }
+        int cellX = x - LABEL_WIDTH;
+        int cellY = y - row * TILE_HEIGHT - HEADER_HEIGHT;
+        if (cellX < 0 || cellY < 0 || cellX % STEP >= CELL || cellY % STEP >= CELL) {
+            return null;
+        }
+        int week = cellX / STEP;
+        int dayOfWeek = cellY / STEP;
+        if (week >= WEEKS || dayOfWeek >= 7) {
+            return null;
+        }
+        LocalDate jan1 = LocalDate.of(year, 1, 1);
+        LocalDate date = jan1.plusDays(week * 7L + dayOfWeek - (jan1.getDayOfWeek().getValue() - 1));
+        return date.getYear() == year ? date : null;
+    }
+
+    private Rectangle tileBounds(int year) {
+        return new Rectangle(0, (lastYear() - year) * TILE_HEIGHT, TILE_WIDTH, TILE_HEIGHT);
+    }
+
+    private static int lastYear() {
+        return Year.now().getValue();
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        return new Dimension(TILE_WIDTH, (lastYear() - firstYear + 1) * TILE_HEIGHT);
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return new Dimension(TILE_WIDTH, 3 * TILE_HEIGHT);
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? STEP * 2 : STEP;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? TILE_HEIGHT : visibleRect.width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return false;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return false;
+    }
+
+    // Mood ordinal plus one (zero for no entry, OTHER_MOOD for an unknown name) and rating per day of the year
+    private static final class YearData {
+        private final byte[] moods = new byte[366];
+        private final byte[] ratings = new byte[366];
+        // Stored names of the OTHER_MOOD days, by the same index as the arrays
+        private final Map<Integer, String> otherMoods = new HashMap<>();
+
+        void set(LocalDate date, Mood mood) {
+            int day = date.getDayOfYear() - 1;
+            MoodType type = mood.getMoodType() != null ? mood.getMoodType() : MoodType.fromName(mood.getMood());
+            if (type != null) {
+                moods[day] = (byte) (type.ordinal() + 1);
+                otherMoods.remove(day);
+            } else {
+                moods[day] = OTHER_MOOD; // Still show that the day was logged
+                otherMoods.put(day, mood.getMood());
+            }
+            ratings[day] = (byte) mood.getRating();
+        }
+
+        void clear(LocalDate date) {
+            int day = date.getDayOfYear() - 1;
+            moods[day] = 0;
+            ratings[day] = 0;
+            otherMoods.remove(day);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package moodtracker;
+
+import javax.imageio.ImageIO;
+import javax.swing.Icon;
+import javax.swing.ImageIcon;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The mood icons, decoded and scaled to {@link MoodType#getIconSize()} once, in
+ * parallel and off the event dispatch thread. The scaled icons are saved as a single
+ * atlas image ({@code moodtracker.icons.atlas}, default data/icons.atlas.png) so later
+ * starts decode one small PNG instead of every source icon; the atlas is rebuilt when
+ * a source icon is newer. Until loading finishes {@link #getIcon} returns a blank icon
+ * of the final size, so layouts do not shift when the real ones arrive.
+ */
+public final class MoodIcons {
+    private static final MoodIcons SHARED =
+            new MoodIcons(Paths.get(AppConfig.get("moodtracker.icons.atlas", "data/icons.atlas.png")));
+
+    private final Path atlasFile;
+    private final int cellSize;
+    // Null until loaded; published whole so readers never see a half-filled array
+    private volatile Icon[] icons;
+    private CompletableFuture<MoodIcons> loading;
+
+    MoodIcons(Path atlasFile) {
+        this.atlasFile = atlasFile;
+        int largest = 0;
+        for (MoodType type : MoodType.values()) {
+            largest = Math.max(largest, type.getIconSize());
+        }
+        this.cellSize = largest;
+    }
+
+    public static MoodIcons getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Starts loading the icons unless that already happened, and completes once they
+     * are available from {@link #getIcon}.
+     */
+    public synchronized CompletableFuture<MoodIcons> load() {
+        if (loading == null) {
+            loading = CompletableFuture.supplyAsync(() -> {
+                long start = System.nanoTime();
+                icons = toIcons(loadImages());
+                Metrics.recordStartup("icons", System.nanoTime() - start);
+                return this;
+            });
+        }
+        return loading;
+    }
+
+    public boolean isLoaded() {
+        return icons != null;
+    }
+
+    public Icon getIcon(MoodType type) {
+        Icon[] loaded = icons;
+        if (loaded != null && loaded[type.ordinal()] != null) {
+            return loaded[type.ordinal()];
+        }
+        return new BlankIcon(type.getIconSize());
+    }
+
+    private BufferedImage[] loadImages() {
+        BufferedImage[] images = readAtlas();
+        if (images != null) {
+            return images;
+        }
+        MoodType[] types = MoodType.values();
+        List<CompletableFuture<BufferedImage>> decoding = new ArrayList<>(types.length);
+        for (MoodType type : types) {
+            decoding.add(CompletableFuture.supplyAsync(() -> decode(type)));
+        }
+        images = new BufferedImage[types.length];
+        boolean complete = true;
+        for (MoodType type : types) {
+            images[type.ordinal()] = decoding.get(type.ordinal()).join();
+            complete &= images[type.ordinal()] != null;
+        }
+        if (complete) {
+            writeAtlas(images);
+        }
+        return images;
+    }
+
+    private static BufferedImage decode(MoodType type) {
+        try {
+            BufferedImage source = ImageIO.read(Paths.get(type.getIconPath()).toFile());
+            if (source == null) {
+                throw new IOException("not a supported image");
+            }
+            return scale(source, type.getIconSize());
+        } catch (IOException e) {
+            System.err.println("Could not load icon " + type.getIconPath() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Scales in steps of at most one half, which keeps large sources from aliasing the
+     * way a single bilinear pass would, at a fraction of the cost of SCALE_SMOOTH.
+     */
+    static BufferedImage scale(BufferedImage source, int size) {
+        BufferedImage current = source;
+        while (current.getWidth() != size || current.getHeight() != size) {
+            int width = current.getWidth() / 2 >= size ? current.getWidth() / 2 : size;
+            int height = current.getHeight() / 2 >= size ? current.getHeight() / 2 : size;
+            BufferedImage next = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(current, 0, 0, width, height, null);
+            g.dispose();
+            current = next;
+        }
+        return current;
+    }
+
+    // The atlas is one row of square cells, one per mood in ordinal order, each icon at its top left
+    private BufferedImage[] readAtlas() {
+        try {
+            if (!Files.isRegularFile(atlasFile)) {
+                return null;
+            }
+            long atlasModified = Files.getLastModifiedTime(atlasFile).toMillis();
+            for (MoodType type : MoodType.values()) {
+                Path source = Paths.get(type.getIconPath());
+                if (Files.exists(source) && Files.getLastModifiedTime(source).toMillis() > atlasModified) {
+                    return null;
+                }
+            }
+            BufferedImage atlas = ImageIO.read(atlasFile.toFile());
+            if (atlas == null || atlas.getWidth() != cellSize * MoodType.count() || atlas.getHeight() != cellSize) {
+                return null;
+            }
+            BufferedImage[] images = new BufferedImage[MoodType.count()];
+            for (MoodType type : MoodType.values()) {
+                images[type.ordinal()] = atlas.getSubimage(type.ordinal() * cellSize, 0, type.getIconSize(),
+                        type.getIconSize());
+            }
+            return images;
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable icon atlas " + atlasFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeAtlas(BufferedImage[] images) {
+        BufferedImage atlas = new BufferedImage(cellSize * images.length, cellSize, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = atlas.createGraphics();
+        for (int i = 0; i < images.length; i++) {
+            g.drawImage(images[i], i * cellSize, 0, null);
+        }
+        g.dispose();
+        try {
+            Path parent = atlasFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path temp = atlasFile.resolveSibling(atlasFile.getFileName() + ".tmp");
+            ImageIO.write(atlas, "png", temp.toFile());
+            Files.move(temp, atlasFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Only a cache: the next start decodes the sources again
+            System.err.println("Could not save icon atlas " + atlasFile + ": " + e.getMessage());
+        }
+    }
+
+    private static Icon[] toIcons(BufferedImage[] images) {
+        Icon[] result = new Icon[images.length];
+        for (int i = 0; i < images.length; i++) {
+            result[i] = images[i] != null ? new ImageIcon(images[i]) : null;
+        }
+        return result;
+    }
+
+    private static final class BlankIcon implements Icon {
+        private final int size;
+
+        BlankIcon(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+        }
+
+        @Override
+        public int getIconWidth() {
+            return size;
+        }
+
+        @Override
+        public int getIconHeight() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package moodtracker;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Read-side index of the whole mood history packed into two byte arrays addressed by
+ * {@link LocalDate#toEpochDay()}: one mood ordinal and one rating per day. A decade
+ * of history costs about 7 KB and lookups, counts and range scans allocate nothing.
+ * There is one index per {@link MoodStore}, loaded once in the background and then
+ * kept current by {@link MoodRepository} on every save and delete. Per-month
+ * {@link MoodRollups} are refreshed along with it, so {@link #statistics} costs
+ * O(months) rather than O(entries).
+ */
+public final class MoodIndex {
+    // Keyed by identity: two repositories over the same store must share one index
+    private static final Map<MoodStore, MoodIndex> BY_STORE = new IdentityHashMap<>();
+    private static final int LOAD_PAGE_SIZE = 1000;
+    private static final int GROWTH_SLACK = 366;
+    private static final byte NO_ENTRY = 0;
+    // An entry whose mood name is not a MoodType: present and rated, but in no mood bucket
+    static final byte UNKNOWN_MOOD = 0x7F;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final MoodRollups rollups = new MoodRollups();
+    private long baseEpochDay;
+    // Mood ordinal + 1 per day (or UNKNOWN_MOOD), so a zeroed array means "no entries"
+    private byte[] moods = new byte[0];
+    private byte[] ratings = new byte[0];
+    private int size;
+    private boolean loaded;
+    // Writes that land while a load is scanning the store, replayed once it finishes
+    private List<long[]> writesDuringLoad;
+    private CompletableFuture<MoodIndex> loading;
+
+    /**
+     * The index of the default store ({@link MoodStores#getDefault()}).
+     */
+    public static MoodIndex getShared() {
+        return of(new MoodRepository());
+    }
+
+    /**
+     * The index of the store behind the given repository.
+     */
+    public static MoodIndex of(MoodRepository repository) {
+        synchronized (BY_STORE) {
+            return BY_STORE.computeIfAbsent(repository.getStore(), store -> new MoodIndex());
+        }
+    }
+
+    /**
+     * Starts loading the index from the repository unless that already happened, and
+     * completes once it is ready.
+     */
+    public synchronized CompletableFuture<MoodIndex> ensureLoaded(MoodRepository repository) {
+        if (loading == null || loading.isCompletedExceptionally()) {
+            lock.writeLock().lock();
+            try {
+                writesDuringLoad = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            loading = AsyncMoodRepository.run(() -> {
+                try {
+                    load(repository);
+                } catch (SQLException | RuntimeException e) {
+                    lock.writeLock().lock();
+                    try {
+                        writesDuringLoad = null;
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                    throw e;
+                }
+                return this;
+            });
+        }
+        return loading;
+    }
+
+    public boolean isLoaded() {
+        lock.readLock().lock();
+        try {
+            return loaded;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Records the day's entry; a null mood is an entry whose mood name is not a
+     * {@link MoodType}.
+     */
+    public void put(LocalDate date, MoodType mood, int rating) {
+        byte code = code(mood);
+        lock.writeLock().lock();
+        try {
+            if (writesDuringLoad != null) {
+                writesDuringLoad.add(new long[]{date.toEpochDay(), code, rating});
+            }
+            set(date.toEpochDay(), code, (byte) rating);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(LocalDate date) {
+        lock.writeLock().lock();
+        try {
+            if (writesDuringLoad != null) {
+                writesDuringLoad.add(new long[]{date.toEpochDay(), NO_ENTRY, 0});
+            }
+            set(date.toEpochDay(), NO_ENTRY, (byte) 0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(long epochDay) {
+        lock.readLock().lock();
+        try {
+            return slot(epochDay) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Mood ordinal recorded for the day, or -1 if there is no entry or its mood is not a
+     * {@link MoodType}.
+     */
+    public int moodOrdinalAt(long epochDay) {
+        lock.readLock().lock();
+        try {
+            int slot = slot(epochDay);
+            return slot < 0 || moods[slot] == UNKNOWN_MOOD ? -1 : moods[slot] - 1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rating recorded for the day, or 0 if there is no entry.
+     */
+    public int ratingAt(long epochDay) {
+        lock.readLock().lock();
+        try {
+            int slot = slot(epochDay);
+            return slot < 0 ? 0 : ratings[slot];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the number of entries per mood ordinal between two days, both inclusive, to
+     * {@code counts} (length {@link MoodType#count()}) and returns the total, which also
+     * includes entries whose mood is not a {@link MoodType}.
+     */
+    public int countMoods(long fromEpochDay, long toEpochDay, int[] counts) {
+        lock.readLock().lock();
+        try {
+            int total = 0;
+            int from = (int) Math.max(0, fromEpochDay - baseEpochDay);
+            int to = (int) Math.min(moods.length - 1L, toEpochDay - baseEpochDay);
+            for (int i = from; i <= to; i++) {
+                if (moods[i] != NO_ENTRY) {
+                    if (moods[i] != UNKNOWN_MOOD) {
+                        counts[moods[i] - 1]++;
+                    }
+                    total++;
+                }
+            }
+            return total;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Calls the visitor for every day with an entry between two days, both inclusive, in
+     * date order, with a mood ordinal of -1 where the mood is not a {@link MoodType}. The
+     * visitor runs under the read lock and must not write to the index.
+     */
+    public void forEachInRange(long fromEpochDay, long toEpochDay, DayVisitor visitor) {
+        lock.readLock().lock();
+        try {
+            int from = (int) Math.max(0, fromEpochDay - baseEpochDay);
+            int to = (int) Math.min(moods.length - 1L, toEpochDay - baseEpochDay);
+            for (int i = from; i <= to; i++) {
+                if (moods[i] != NO_ENTRY) {
+                    visitor.visit(baseEpochDay + i, moods[i] == UNKNOWN_MOOD ? -1 : moods[i] - 1, ratings[i]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Date of the earliest entry, or null if there are none.
+     */
+    public LocalDate getFirstDate() {
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < moods.length; i++) {
+                if (moods[i] != NO_ENTRY) {
+                    return LocalDate.ofEpochDay(baseEpochDay + i);
+                }
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of entries dated before the given day, i.e. its row in a date-ordered list.
+     */
+    public int rankOf(long epochDay) {
+        lock.readLock().lock();
+        try {
+            int rank = 0;
+            int end = (int) Math.min(moods.length, Math.max(0, epochDay - baseEpochDay));
+            for (int i = 0; i < end; i++) {
+                if (moods[i] != NO_ENTRY) {
+                    rank++;
+                }
+            }
+            return rank;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Mood distribution, average rating and streaks between two dates, both inclusive.
+     */
+    public MoodStatistics statistics(LocalDate from, LocalDate to) {
+        lock.readLock().lock();
+        try {
+            return rollups.statistics(from, to, baseEpochDay, moods, ratings);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Statistics for each week, month or year overlapping the range, oldest first; the
+     * first and last buckets are clipped to the range.
+     */
+    public List<MoodStatistics> statisticsBy(MoodStatistics.Period period, LocalDate from, LocalDate to) {
+        List<MoodStatistics> buckets = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (LocalDate start = period.startOf(from); !start.isAfter(to); start = period.next(start)) {
+                LocalDate bucketFrom = start.isBefore(from) ? from : start;
+                LocalDate end = period.next(start).minusDays(1);
+                buckets.add(rollups.statistics(bucketFrom, end.isAfter(to) ? to : end, baseEpochDay, moods, ratings));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return buckets;
+    }
+
+    @FunctionalInterface
+    public interface DayVisitor {
+        void visit(long epochDay, int moodOrdinal, int rating);
+    }
+
+    private void load(MoodRepository repository) throws SQLException {
+        // Build into a private index so readers keep seeing a consistent (empty) one meanwhile
+        MoodIndex scratch = new MoodIndex();
+        repository.forEachEntry(LOAD_PAGE_SIZE, mood ->
+                scratch.setDay(mood.getDate().toEpochDay(), code(mood.getMoodType()), (byte) mood.getRating()));
+        lock.writeLock().lock();
+        try {
+            baseEpochDay = scratch.baseEpochDay;
+            moods = scratch.moods;
+            ratings = scratch.ratings;
+            size = scratch.size;
+            rollups.rebuild(baseEpochDay, moods, ratings);
+            for (long[] write : writesDuringLoad) {
+                set(write[0], (byte) write[1], (byte) write[2]);
+            }
+            writesDuringLoad = null;
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static byte code(MoodType mood) {
+        return mood != null ? (byte) (mood.ordinal() + 1) : UNKNOWN_MOOD;
+    }
+
+    private int slot(long epochDay) {
+        long slot = epochDay - baseEpochDay;
+        if (slot < 0 || slot >= moods.length || moods[(int) slot] == NO_ENTRY) {
+            return -1;
+        }
+        return (int) slot;
+    }
+
+    // Caller holds the write lock
+    private void set(long epochDay, byte mood, byte rating) {
+        setDay(epochDay, mood, rating);
+        rollups.refresh(epochDay, baseEpochDay, moods, ratings);
+    }
+
+    // Caller holds the write lock (or owns the instance exclusively); leaves the rollups stale
+    private void setDay(long epochDay, byte mood, byte rating) {
+        if (mood == NO_ENTRY) {
+            long slot = epochDay - baseEpochDay;
+            if (slot >= 0 && slot < moods.length && moods[(int) slot] != NO_ENTRY) {
+                moods[(int) slot] = NO_ENTRY;
+                ratings[(int) slot] = 0;
+                size--;
+            }
+            return;
+        }
+        int slot = ensureSlot(epochDay);
+        if (moods[slot] == NO_ENTRY) {
+            size++;
+        }
+        moods[slot] = mood;
+        ratings[slot] = rating;
+    }
+
+    private int ensureSlot(long epochDay) {
+        if (moods.length == 0) {
+            baseEpochDay = epochDay - GROWTH_SLACK;
+            moods = new byte[2 * GROWTH_SLACK + 1];
+            ratings = new byte[moods.length];
+        } else if (epochDay < baseEpochDay) {
+            int shift = (int) (baseEpochDay - epochDay) + GROWTH_SLACK;
+            moods = shiftRight(moods, shift);
+            ratings = shiftRight(ratings, shift);
+            baseEpochDay -= shift;
+        } else if (epochDay - baseEpochDay >= moods.length) {
+            int length = (int) (epochDay - baseEpochDay) + GROWTH_SLACK;
+            moods = Arrays.copyOf(moods, length);
+            ratings = Arrays.copyOf(ratings, length);
+        }
+        return (int) (epochDay - baseEpochDay);
+    }
+
+    private static byte[] shiftRight(byte[] array, int shift) {
+        byte[] shifted = new byte[array.length + shift];
+        System.arraycopy(array, 0, shifted, shift, array.length);
+        return shifted;
+    }
+}
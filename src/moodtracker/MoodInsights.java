@@ -0,0 +1,149 @@
+package moodtracker;
+
+import java.time.DayOfWeek;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Patterns across the whole history, produced by {@link MoodAnalytics}: the average
+ * rating and most common mood per weekday and per calendar month, and the gratitude
+ * words that go with higher or lower ratings than usual.
+ */
+public final class MoodInsights {
+    private final int entryCount;
+    private final long ratingSum;
+    private final int[] weekdayEntries;
+    private final long[] weekdayRatingSums;
+    private final int[] weekdayMoodCounts;
+    private final int[] monthEntries;
+    private final long[] monthRatingSums;
+    private final int[] monthMoodCounts;
+    // Best first
+    private final List<WordInsight> words;
+
+    MoodInsights(int entryCount, long ratingSum, int[] weekdayEntries, long[] weekdayRatingSums,
+                 int[] weekdayMoodCounts, int[] monthEntries, long[] monthRatingSums, int[] monthMoodCounts,
+                 List<WordInsight> words) {
+        this.entryCount = entryCount;
+        this.ratingSum = ratingSum;
+        this.weekdayEntries = weekdayEntries;
+        this.weekdayRatingSums = weekdayRatingSums;
+        this.weekdayMoodCounts = weekdayMoodCounts;
+        this.monthEntries = monthEntries;
+        this.monthRatingSums = monthRatingSums;
+        this.monthMoodCounts = monthMoodCounts;
+        this.words = Collections.unmodifiableList(words);
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    public double getAverageRating() {
+        return entryCount == 0 ? 0 : (double) ratingSum / entryCount;
+    }
+
+    public int getEntryCount(DayOfWeek day) {
+        return weekdayEntries[day.ordinal()];
+    }
+
+    public double getAverageRating(DayOfWeek day) {
+        int entries = weekdayEntries[day.ordinal()];
+        return entries == 0 ? 0 : (double) weekdayRatingSums[day.ordinal()] / entries;
+    }
+
+    // Null if no entry fell on that weekday
+    public MoodType getMostCommonMood(DayOfWeek day) {
+        return mostCommon(weekdayMoodCounts, day.ordinal());
+    }
+
+    public int getEntryCount(Month month) {
+        return monthEntries[month.ordinal()];
+    }
+
+    public double getAverageRating(Month month) {
+        int entries = monthEntries[month.ordinal()];
+        return entries == 0 ? 0 : (double) monthRatingSums[month.ordinal()] / entries;
+    }
+
+    // Null if no entry fell in that month of any year
+    public MoodType getMostCommonMood(Month month) {
+        return mostCommon(monthMoodCounts, month.ordinal());
+    }
+
+    /**
+     * Words whose entries are rated highest compared with the overall average.
+     */
+    public List<WordInsight> getTopWords(int limit) {
+        List<WordInsight> top = new ArrayList<>();
+        for (WordInsight word : words) {
+            if (top.size() >= limit || word.getRatingLift() <= 0) {
+                break;
+            }
+            top.add(word);
+        }
+        return top;
+    }
+
+    /**
+     * Words whose entries are rated lowest compared with the overall average, lowest first.
+     */
+    public List<WordInsight> getBottomWords(int limit) {
+        List<WordInsight> bottom = new ArrayList<>();
+        for (int i = words.size() - 1; i >= 0 && bottom.size() < limit; i--) {
+            if (words.get(i).getRatingLift() >= 0) {
+                break;
+            }
+            bottom.add(words.get(i));
+        }
+        return bottom;
+    }
+
+    private static MoodType mostCommon(int[] counts, int row) {
+        int base = row * MoodType.count();
+        int best = -1;
+        for (int i = 0; i < MoodType.count(); i++) {
+            if (counts[base + i] > 0 && (best < 0 || counts[base + i] > counts[base + best])) {
+                best = i;
+            }
+        }
+        return MoodType.fromOrdinal(best);
+    }
+
+    /**
+     * How entries mentioning one word were rated. The lift compares a smoothed average,
+     * pulled towards the overall one for rare words, with the overall average, so a word
+     * seen twice cannot outrank one seen in a hundred good days.
+     */
+    public static final class WordInsight {
+        private final String word;
+        private final int entryCount;
+        private final double averageRating;
+        private final double ratingLift;
+
+        WordInsight(String word, int entryCount, double averageRating, double ratingLift) {
+            this.word = word;
+            this.entryCount = entryCount;
+            this.averageRating = averageRating;
+            this.ratingLift = ratingLift;
+        }
+
+        public String getWord() {
+            return word;
+        }
+
+        public int getEntryCount() {
+            return entryCount;
+        }
+
+        public double getAverageRating() {
+            return averageRating;
+        }
+
+        public double getRatingLift() {
+            return ratingLift;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package moodtracker;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only file of writes that could not reach the server yet, one JSON object per
+ * line, each line forced to disk before {@link #append} returns so an accepted write
+ * survives a crash. {@link SnapshotMoodStore} replays the journal in order once the
+ * server answers again and then drops the replayed prefix. A line cut short by a crash
+ * mid-append is cut off on the next open, so the next append starts on a fresh line.
+ * Writes the server refuses are moved to a {@code .rejected} file next to the journal.
+ */
+final class MoodJournal implements AutoCloseable {
+    private final Path file;
+    private final List<MoodWrite> pending = new ArrayList<>();
+    private FileChannel channel;
+
+    MoodJournal(Path file) throws SQLException {
+        this.file = file;
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            if (Files.exists(file)) {
+                truncateTornTail();
+                read();
+            }
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new SQLException("Could not open write journal " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    synchronized void append(List<MoodWrite> writes) throws SQLException {
+        StringBuilder lines = new StringBuilder(writes.size() * 96);
+        for (MoodWrite write : writes) {
+            appendLine(lines, write);
+        }
+        try {
+            ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new SQLException("Could not write to journal " + file + ": " + e.getMessage(), e);
+        }
+        pending.addAll(writes);
+    }
+
+    synchronized boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * The journaled writes, oldest first.
+     */
+    synchronized List<MoodWrite> pending() {
+        return Collections.unmodifiableList(new ArrayList<>(pending));
+    }
+
+    /**
+     * Drops the oldest {@code count} writes once they have been replayed, keeping any
+     * appended since. The file is rewritten aside and swapped in, so a crash leaves
+     * either the old journal or the new one.
+     */
+    synchronized void removeFirst(int count) throws SQLException {
+        List<MoodWrite> remaining = new ArrayList<>(pending.subList(count, pending.size()));
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            StringBuilder lines = new StringBuilder();
+            for (MoodWrite write : remaining) {
+                appendLine(lines, write);
+            }
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+                while (bytes.hasRemaining()) {
+                    out.write(bytes);
+                }
+                out.force(false);
+            }
+            channel.close();
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new SQLException("Could not compact journal " + file + ": " + e.getMessage(), e);
+        }
+        pending.clear();
+        pending.addAll(remaining);
+    }
+
+    /**
+     * Appends writes the server refused to the {@code .rejected} file, so they are kept
+     * for inspection once they leave the journal.
+     */
+    synchronized void setAside(List<MoodWrite> writes) throws SQLException {
+        Path rejected = file.resolveSibling(file.getFileName() + ".rejected");
+        StringBuilder lines = new StringBuilder();
+        for (MoodWrite write : writes) {
+            appendLine(lines, write);
+        }
+        try (FileChannel out = FileChannel.open(rejected, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+            out.force(false);
+        } catch (IOException e) {
+            throw new SQLException("Could not write rejected writes to " + rejected + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws SQLException {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new SQLException("Could not close journal " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    // Cuts the file back to its last newline, dropping a record a crash left half-written
+    private void truncateTornTail() throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long end = in.size();
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            long keep = 0;
+            for (long position = end; position > 0 && keep == 0; ) {
+                int length = (int) Math.min(buffer.capacity(), position);
+                position -= length;
+                buffer.clear().limit(length);
+                while (buffer.hasRemaining()) {
+                    if (in.read(buffer, position + buffer.position()) < 0) {
+                        break;
+                    }
+                }
+                for (int i = length - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n') {
+                        keep = position + i + 1;
+                        break;
+                    }
+                }
+            }
+            if (keep < end) {
+                System.err.println("Discarding " + (end - keep) + " bytes of a half-written record at the end of journal " + file);
+                in.truncate(keep);
+                in.force(true);
+            }
+        }
+    }
+
+    private void read() throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = in.readLine()) != null) {
+                number++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    pending.add(parseLine(line));
+                } catch (RuntimeException e) {
+                    System.err.println("Skipping unreadable line " + number + " of journal " + file + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void appendLine(StringBuilder out, MoodWrite write) {
+        out.append("{\"type\":\"").append(write.getType()).append("\",\"date\":\"").append(write.getDate()).append('"');
+        if (write.getType() != MoodWrite.Type.DELETE) {
+            out.append(",\"mood\":");
+            Json.appendString(out, write.getMood());
+            out.append(",\"rating\":").append(write.getRating()).append(",\"gratitude\":");
+            Json.appendString(out, write.getGratitude());
+        }
+        out.append("}\n");
+    }
+
+    private static MoodWrite parseLine(String line) {
+        Map<String, Object> row = Json.parseObject(line);
+        LocalDate date = LocalDate.parse(String.valueOf(row.get("date")));
+        MoodWrite.Type type = MoodWrite.Type.valueOf(String.valueOf(row.get("type")));
+        if (type == MoodWrite.Type.DELETE) {
+            return MoodWrite.delete(date);
+        }
+        String mood = (String) row.get("mood");
+        String gratitude = (String) row.get("gratitude");
+        int rating = ((Number) row.get("rating")).intValue();
+        return type == MoodWrite.Type.UPSERT
+                ? MoodWrite.upsert(date, mood, gratitude, rating)
+                : MoodWrite.update(date, mood, gratitude, rating);
+    }
+}
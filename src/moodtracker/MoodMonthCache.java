@@ -0,0 +1,180 @@
+package moodtracker;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Client-side cache of whole months of mood entries, so browsing the calendar costs
+ * one range query per month instead of one query per day clicked. Months are kept in
+ * least-recently-used order and evicted past {@code moodtracker.cache.months}.
+ * There is one cache per {@link MoodStore}, shared by every repository over that
+ * store, so each loads from the store it belongs to; repository writes invalidate the
+ * month they touch.
+ */
+public class MoodMonthCache {
+    private static final int MAX_MONTHS = AppConfig.getInt("moodtracker.cache.months", 12);
+    // Keyed by identity: two repositories over the same store must share one cache
+    private static final Map<MoodStore, MoodMonthCache> BY_STORE = new IdentityHashMap<>();
+
+    private final AsyncMoodRepository moodRepository;
+    private final Map<YearMonth, MonthLoad> months;
+
+    public MoodMonthCache(AsyncMoodRepository moodRepository, int maxMonths) {
+        this.moodRepository = moodRepository;
+        this.months = new LinkedHashMap<YearMonth, MonthLoad>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<YearMonth, MonthLoad> eldest) {
+                return size() > maxMonths;
+            }
+        };
+    }
+
+    /**
+     * The cache for the default store ({@link MoodStores#getDefault()}).
+     */
+    public static MoodMonthCache getShared() {
+        return of(new MoodRepository());
+    }
+
+    /**
+     * The cache for the store behind the given repository, which loads through that
+     * repository the first time the store is seen.
+     */
+    public static MoodMonthCache of(MoodRepository repository) {
+        synchronized (BY_STORE) {
+            return BY_STORE.computeIfAbsent(repository.getStore(),
+                    store -> new MoodMonthCache(new AsyncMoodRepository(repository), MAX_MONTHS));
+        }
+    }
+
+    /**
+     * Returns the entries of the given month keyed by date, loading the month with a
+     * single range query if it is not cached. Concurrent callers share one load.
+     */
+    public CompletableFuture<Map<LocalDate, Mood>> getMonth(YearMonth month) {
+        return getMonth(month, null);
+    }
+
+    /**
+     * Like {@link #getMonth(YearMonth)}, for a caller that may lose interest. A load
+     * still in flight is cancelled, query included, once every caller waiting on it
+     * has cancelled its token; a load anyone requested without a token always runs to
+     * the end. A cancelled load is dropped from the cache.
+     */
+    public CompletableFuture<Map<LocalDate, Mood>> getMonth(YearMonth month, CancellationToken token) {
+        MonthLoad load;
+        boolean started = false;
+        synchronized (months) {
+            load = months.get(month);
+            if (load == null) {
+                load = new MonthLoad();
+                load.future = moodRepository.getMoodsBetween(month.atDay(1), month.atEndOfMonth(), load.token)
+                        .thenApply(MoodMonthCache::byDate);
+                months.put(month, load);
+                started = true;
+            }
+            if (token == null) {
+                load.pinned = true;
+            } else {
+                load.waiters++;
+            }
+        }
+        MonthLoad loading = load;
+        if (started) {
+            // Do not cache failures; the next lookup retries
+            loading.future.whenComplete((moods, error) -> {
+                if (error != null) {
+                    synchronized (months) {
+                        months.remove(month, loading);
+                    }
+                }
+            });
+        }
+        if (token != null) {
+            token.onCancel(() -> release(month, loading));
+        }
+        return loading.future;
+    }
+
+    /**
+     * Returns the month's entries if they are already in memory, without loading them.
+     */
+    public Map<LocalDate, Mood> getIfLoaded(YearMonth month) {
+        CompletableFuture<Map<LocalDate, Mood>> future;
+        synchronized (months) {
+            MonthLoad load = months.get(month);
+            if (load == null) {
+                return null;
+            }
+            future = load.future;
+        }
+        return future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+    }
+
+    public CompletableFuture<Mood> getMood(LocalDate date) {
+        return getMonth(YearMonth.from(date)).thenApply(moods -> moods.get(date));
+    }
+
+    /**
+     * Starts loading the given month and its neighbours so that paging the calendar
+     * one month either way is served from memory.
+     */
+    public void prefetchAround(YearMonth month) {
+        getMonth(month);
+        prefetchNeighbours(month);
+    }
+
+    /**
+     * Starts loading the months either side of the given one; they are loaded to the
+     * end even if the month itself is given up.
+     */
+    public void prefetchNeighbours(YearMonth month) {
+        getMonth(month.minusMonths(1));
+        getMonth(month.plusMonths(1));
+    }
+
+    public void invalidate(LocalDate date) {
+        synchronized (months) {
+            months.remove(YearMonth.from(date));
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (months) {
+            months.clear();
+        }
+    }
+
+    private static Map<LocalDate, Mood> byDate(List<Mood> moods) {
+        Map<LocalDate, Mood> map = new HashMap<>();
+        for (Mood mood : moods) {
+            map.put(mood.getDate(), mood);
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    private void release(YearMonth month, MonthLoad load) {
+        synchronized (months) {
+            if (load.pinned || --load.waiters > 0 || load.future.isDone()) {
+                return;
+            }
+            months.remove(month, load);
+        }
+        load.token.cancel();
+    }
+
+    // One month's load and the callers still interested in it; guarded by the months lock
+    private static final class MonthLoad {
+        private final CancellationToken token = new CancellationToken();
+        private CompletableFuture<Map<LocalDate, Mood>> future;
+        private int waiters;
+        private boolean pinned;
+    }
+}
@@ -1,158 +1,276 @@
 package moodtracker;
 
-import java.sql.*;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.sql.SQLException;
 import java.time.LocalDate;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
+/**
+ * Entry point for reading and writing mood entries. Storage is delegated to a
+ * {@link MoodStore}; this class adds the behaviour every engine shares, such as
+ * keeping the store's {@link MoodMonthCache}, {@link MoodIndex},
+ * {@link GratitudeSearchIndex} and {@link MoodAnalytics} in step with writes,
+ * announcing writes to the default store on {@link MoodChangeBus}, and timing every
+ * call through {@link Metrics}.
+ */
 public class MoodRepository {
+    // Beyond this many writes from elsewhere, views are told to reload rather than patched
+    private static final int EXTERNAL_WRITES_PER_EVENT = 50;
 
-	public void saveMoodEntry(LocalDate currentDate, String mood, String gratitudeText, int rating) throws SQLException {
-	    // Check if there is already an entry for the given date
-	    if (isEntryExistsForDate(currentDate)) {
-	        throw new SQLException("An entry for today already exists.");
-	    }
-
-	    String sql = "INSERT INTO moodentries (mood, rating, gratitude, entryDate) VALUES (?, ?, ?, ?)";
-	    try (Connection connection = DatabaseConnection.getConnection();
-	         PreparedStatement stmt = connection.prepareStatement(sql)) {
-	        stmt.setString(1, mood);
-	        stmt.setInt(2, rating);
-	        stmt.setString(3, gratitudeText);
-	        stmt.setDate(4, Date.valueOf(currentDate));
-	        stmt.executeUpdate();
-	    }
-	}
-
-	private boolean isEntryExistsForDate(LocalDate date) throws SQLException {
-	    String sql = "SELECT COUNT(*) FROM moodentries WHERE entryDate = ?";
-	    try (Connection connection = DatabaseConnection.getConnection();
-	         PreparedStatement stmt = connection.prepareStatement(sql)) {
-	        stmt.setDate(1, Date.valueOf(date));
-	        try (ResultSet rs = stmt.executeQuery()) {
-	            if (rs.next()) {
-	                int count = rs.getInt(1);
-	                return count > 0; // If count is greater than 0, an entry exists
-	            }
-	        }
-	    }
-	    return false; // No entry exists for the given date
-	}
-	
-	public void saveOrUpdateMoodEntry(LocalDate currentDate, String mood, String gratitudeText, int rating) throws SQLException {
-	    // Check if there is already an entry for today
-	    if (isEntryExistsForDate(currentDate)) {
-	        // Update the existing entry
-	        updateMoodEntry(currentDate, mood, gratitudeText, rating);
-	    } else {
-	        // Insert a new entry if no entry exists
-	        saveMoodEntry(currentDate, mood, gratitudeText, rating);
-	    }
-	}
-	
-	private void updateMoodEntry(LocalDate date, String mood, String gratitudeText, int rating) throws SQLException {
-	    String sql = "UPDATE moodentries SET mood = ?, rating = ?, gratitude = ? WHERE entryDate = ?";
-	    try (Connection connection = DatabaseConnection.getConnection();
-	         PreparedStatement stmt = connection.prepareStatement(sql)) {
-	        stmt.setString(1, mood);
-	        stmt.setInt(2, rating);
-	        stmt.setString(3, gratitudeText);
-	        stmt.setDate(4, Date.valueOf(date));
-	        stmt.executeUpdate();
-	    }
-	}
-	
-	public Mood getMoodEntryForToday() throws SQLException {
-	    LocalDate currentDate = LocalDate.now();
-	    String sql = "SELECT * FROM moodentries WHERE entryDate = ?";
-	    try (Connection connection = DatabaseConnection.getConnection();
-	         PreparedStatement stmt = connection.prepareStatement(sql)) {
-	        stmt.setDate(1, Date.valueOf(currentDate));
-	        try (ResultSet rs = stmt.executeQuery()) {
-	            if (rs.next()) {
-	                Mood mood = new Mood();
-	                mood.setId(rs.getInt("id"));
-	                mood.setMood(rs.getString("mood"));
-	                mood.setRating(rs.getInt("rating"));
-	                mood.setGratitude(rs.getString("gratitude"));
-	                mood.setDate(rs.getDate("entryDate").toLocalDate());
-	                return mood;
-	            }
-	        }
-	    }
-	    return null; // No entry found for today
-	}
-
-
-
-    // Method to get all mood entries
-    public List<Mood> getAllEntries() throws SQLException {
-        String sql = "SELECT * FROM moodentries";
-        List<Mood> moods = new ArrayList<>();
-        try (Connection connection = DatabaseConnection.getConnection();
-             Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                Mood mood = new Mood();
-                mood.setId(rs.getInt("id"));
-                mood.setMood(rs.getString("mood"));
-                mood.setRating(rs.getInt("rating"));
-                mood.setGratitude(rs.getString("gratitude"));
-                mood.setDate(rs.getDate("entryDate").toLocalDate());
-                moods.add(mood);
-            }
+    private final MoodStore store;
+
+    public MoodRepository() {
+        this(MoodStores.getDefault());
+    }
+
+    public MoodRepository(MoodStore store) {
+        this.store = store;
+    }
+
+    MoodStore getStore() {
+        return store;
+    }
+
+    public void saveMoodEntry(LocalDate currentDate, String mood, String gratitudeText, int rating) throws SQLException {
+        Metrics.run("saveMoodEntry", () -> store.saveMoodEntry(currentDate, mood, gratitudeText, rating));
+        MoodMonthCache.of(this).invalidate(currentDate);
+        MoodIndex.of(this).put(currentDate, MoodType.fromName(mood), rating);
+        GratitudeSearchIndex.of(this).put(currentDate, gratitudeText);
+        changed(MoodChangeEvent.saved(entry(currentDate, mood, gratitudeText, rating)));
+    }
+
+    public void saveOrUpdateMoodEntry(LocalDate currentDate, String mood, String gratitudeText, int rating) throws SQLException {
+        upsertMoodEntry(currentDate, mood, gratitudeText, rating);
+    }
+
+    /**
+     * Inserts the entry for the given date or overwrites the existing one in a single
+     * statement, so concurrent submits for the same day cannot create duplicates.
+     */
+    public void upsertMoodEntry(LocalDate date, String mood, String gratitudeText, int rating) throws SQLException {
+        Metrics.run("upsertMoodEntry", () -> store.upsertMoodEntry(date, mood, gratitudeText, rating));
+        MoodMonthCache.of(this).invalidate(date);
+        MoodIndex.of(this).put(date, MoodType.fromName(mood), rating);
+        GratitudeSearchIndex.of(this).put(date, gratitudeText);
+        changed(MoodChangeEvent.saved(entry(date, mood, gratitudeText, rating)));
+    }
+
+    public void updateMoodEntry(LocalDate date, String mood, String gratitudeText, int rating) throws SQLException {
+        Metrics.run("updateMoodEntry", () -> store.updateMoodEntry(date, mood, gratitudeText, rating));
+        MoodMonthCache.of(this).invalidate(date);
+        MoodIndex index = MoodIndex.of(this);
+        if (index.contains(date.toEpochDay())) {
+            index.put(date, MoodType.fromName(mood), rating);
         }
-        return moods;
+        GratitudeSearchIndex searchIndex = GratitudeSearchIndex.of(this);
+        if (searchIndex.contains(date)) {
+            searchIndex.put(date, gratitudeText);
+        }
+        changed(MoodChangeEvent.updated(entry(date, mood, gratitudeText, rating)));
+    }
+
+    public Mood getMoodEntryForToday() throws SQLException {
+        List<Mood> moods = Metrics.time("getMoodEntryForToday", () -> store.getMoodsByDate(LocalDate.now()));
+        return moods.isEmpty() ? null : moods.get(0); // Null if there is no entry for today
+    }
+
+    // Method to get all mood entries; prefer getEntriesAfter or forEachEntry for large histories
+    public List<Mood> getAllEntries() throws SQLException {
+        return Metrics.time("getAllEntries", store::getAllEntries);
     }
 
     // Method to get moods by a specific date
     public List<Mood> getMoodsByDate(LocalDate date) throws SQLException {
-        String sql = "SELECT * FROM moodentries WHERE entryDate = ?";
-        List<Mood> moods = new ArrayList<>();
-        try (Connection connection = DatabaseConnection.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setDate(1, Date.valueOf(date));  // Convert LocalDate to SQL Date
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    Mood mood = new Mood();
-                    mood.setId(rs.getInt("id"));
-                    mood.setMood(rs.getString("mood"));
-                    mood.setRating(rs.getInt("rating"));
-                    mood.setGratitude(rs.getString("gratitude"));
-                    mood.setDate(rs.getDate("entryDate").toLocalDate());
-                    moods.add(mood);
-                }
+        return Metrics.time("getMoodsByDate", () -> store.getMoodsByDate(date));
+    }
+
+    // Method to get mood summaries between two dates, both inclusive, ordered by date
+    public List<Mood> getMoodsBetween(LocalDate start, LocalDate end) throws SQLException {
+        return Metrics.time("getMoodsBetween", () -> store.getMoodsBetween(start, end));
+    }
+
+    /**
+     * Returns summaries of up to {@code limit} entries dated strictly after {@code after}
+     * (or from the first entry when {@code after} is null), ordered by date. Seeking on
+     * the indexed entryDate keeps every page equally cheap, unlike OFFSET paging.
+     */
+    public List<Mood> getEntriesAfter(LocalDate after, int limit) throws SQLException {
+        return Metrics.time("getEntriesAfter", () -> store.getEntriesAfter(after, limit));
+    }
+
+    /**
+     * Streams a summary of every entry in date order, one keyset page at a time, so at
+     * most {@code pageSize} entries are held in memory.
+     */
+    public void forEachEntry(int pageSize, Consumer<Mood> action) throws SQLException {
+        LocalDate after = null;
+        List<Mood> page;
+        do {
+            page = getEntriesAfter(after, pageSize);
+            for (Mood mood : page) {
+                action.accept(mood);
+            }
+            if (!page.isEmpty()) {
+                after = page.get(page.size() - 1).getDate();
+            }
+        } while (page.size() == pageSize);
+    }
+
+    /**
+     * Streams every full entry, gratitude included, in date order with bounded memory.
+     */
+    public void forEachFullEntry(Consumer<Mood> action) throws SQLException {
+        store.streamEntries(action);
+    }
+
+    // Date of the entry at the given position in date order, used to seek to a page without reading the ones before it
+    public LocalDate getEntryDateAt(int offset) throws SQLException {
+        return Metrics.time("getEntryDateAt", () -> store.getEntryDateAt(offset));
+    }
+
+    // Full gratitude text of one entry, backing the lazy Mood.getGratitude() of summaries
+    public String getGratitude(LocalDate date) throws SQLException {
+        return Metrics.time("getGratitude", () -> store.getGratitude(date));
+    }
+
+    public int countEntries() throws SQLException {
+        return Metrics.time("countEntries", store::countEntries);
+    }
+
+    /**
+     * See {@link MoodStore#getChangeMarker()}.
+     */
+    public String getChangeMarker() throws SQLException {
+        return Metrics.time("getChangeMarker", store::getChangeMarker);
+    }
+
+    private MoodIndex loadedIndex() throws SQLException {
+        try {
+            return MoodIndex.of(this).ensureLoaded(this).join();
+        } catch (CompletionException e) {
+            Throwable cause = AsyncMoodRepository.unwrap(e);
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
             }
+            throw new SQLException("Could not load the mood index: " + cause.getMessage(), cause);
         }
-        return moods;
     }
-    
 
-    
     public void deleteMoodEntryByDate(LocalDate date) throws SQLException {
-        String sql = "DELETE FROM moodentries WHERE entryDate = ?";
-        try (Connection connection = DatabaseConnection.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setDate(1, Date.valueOf(date));
-            stmt.executeUpdate();
+        Metrics.run("deleteMoodEntryByDate", () -> store.deleteMoodEntryByDate(date));
+        MoodMonthCache.of(this).invalidate(date);
+        MoodIndex.of(this).remove(date);
+        GratitudeSearchIndex.of(this).remove(date);
+        changed(MoodChangeEvent.deleted(date));
+    }
+
+    /**
+     * Upserts every row of a CSV or JSON lines document; see {@link MoodTransfer}.
+     *
+     * @return the number of rows imported
+     */
+    public int importEntries(Reader in, MoodTransfer.Format format) throws IOException, SQLException {
+        try {
+            MoodIndex index = MoodIndex.of(this);
+            GratitudeSearchIndex searchIndex = GratitudeSearchIndex.of(this);
+            return MoodTransfer.importEntries(in, format, store, write -> {
+                index.put(write.getDate(), MoodType.fromName(write.getMood()), write.getRating());
+                searchIndex.put(write.getDate(), write.getGratitude());
+            });
+        } finally {
+            MoodMonthCache.of(this).invalidateAll();
+            changed(MoodChangeEvent.imported());
         }
     }
 
-    
+    /**
+     * Streams the whole history to {@code out} in date order; see {@link MoodTransfer}.
+     *
+     * @return the number of entries exported
+     */
+    public int exportEntries(Writer out, MoodTransfer.Format format) throws IOException, SQLException {
+        return MoodTransfer.exportEntries(store, out, format);
+    }
+
+    /**
+     * Statistics between two dates, both inclusive, from the in-memory rollups; loads
+     * the {@link MoodIndex} first if needed.
+     */
+    public MoodStatistics getStatistics(LocalDate from, LocalDate to) throws SQLException {
+        return loadedIndex().statistics(from, to);
+    }
+
+    public List<MoodStatistics> getStatisticsBy(MoodStatistics.Period period, LocalDate from, LocalDate to)
+            throws SQLException {
+        return loadedIndex().statisticsBy(period, from, to);
+    }
+
+    /**
+     * Weekday, seasonal and gratitude-word patterns over the whole history; see
+     * {@link MoodAnalytics}. Only months changed since the last call are re-read.
+     */
+    public MoodInsights getInsights() throws SQLException {
+        return Metrics.time("getInsights", () -> MoodAnalytics.of(this).analyze(this));
+    }
+
     public List<LocalDate> getDatesWithEntries() throws SQLException {
-        String sql = "SELECT DISTINCT entryDate FROM moodentries";
-        List<LocalDate> dates = new ArrayList<>();
-        try (Connection connection = DatabaseConnection.getConnection();
-             Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                dates.add(rs.getDate("entryDate").toLocalDate());
+        return Metrics.time("getDatesWithEntries", store::getDatesWithEntries);
+    }
+
+    /**
+     * Brings the default store's caches and open windows up to date with writes made
+     * outside this process, such as those a {@link SnapshotMoodStore} sync pulled from the
+     * server. Only the default store has such layers ({@link MoodStores}).
+     */
+    static void applyExternalWrites(List<MoodWrite> writes) {
+        MoodRepository repository = new MoodRepository();
+        MoodIndex index = MoodIndex.of(repository);
+        GratitudeSearchIndex searchIndex = GratitudeSearchIndex.of(repository);
+        MoodMonthCache months = MoodMonthCache.of(repository);
+        MoodAnalytics analytics = MoodAnalytics.of(repository);
+        for (MoodWrite write : writes) {
+            if (write.getType() == MoodWrite.Type.DELETE) {
+                index.remove(write.getDate());
+                searchIndex.remove(write.getDate());
+            } else {
+                index.put(write.getDate(), MoodType.fromName(write.getMood()), write.getRating());
+                searchIndex.put(write.getDate(), write.getGratitude());
             }
         }
-        return dates;
+        if (writes.size() > EXTERNAL_WRITES_PER_EVENT) {
+            // Views re-read everything after an IMPORTED event, which beats patching row by row
+            months.invalidateAll();
+            analytics.invalidate(MoodChangeEvent.imported());
+            MoodChangeBus.getShared().publish(MoodChangeEvent.imported());
+            return;
+        }
+        for (MoodWrite write : writes) {
+            MoodChangeEvent event = write.getType() == MoodWrite.Type.DELETE
+                    ? MoodChangeEvent.deleted(write.getDate()) : MoodChangeEvent.saved(write.toMood());
+            months.invalidate(write.getDate());
+            analytics.invalidate(event);
+            MoodChangeBus.getShared().publish(event);
+        }
     }
-    
-    
 
+    // The bus feeds the windows, which all show the default store; other stores have none
+    private void changed(MoodChangeEvent event) {
+        MoodAnalytics.of(this).invalidate(event);
+        if (MoodStores.isDefault(store)) {
+            MoodChangeBus.getShared().publish(event);
+        }
+    }
 
+    private static Mood entry(LocalDate date, String mood, String gratitudeText, int rating) {
+        Mood entry = new Mood();
+        entry.setDate(date);
+        entry.setMood(mood);
+        entry.setGratitude(gratitudeText);
+        entry.setRating(rating);
+        return entry;
+    }
 }
@@ -0,0 +1,152 @@
+package moodtracker;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pre-aggregated counters per calendar month: entries per mood, rating sum, and the
+ * runs of consecutive logged days at the start, at the end and anywhere inside the
+ * month. Month summaries combine like segments, so statistics over any range cost
+ * one step per month plus a scan of the two partial months at its ends.
+ *
+ * <p>Owned by {@link MoodIndex}, which refreshes a month from its day arrays whenever
+ * a day in it changes; every method runs under the index lock.
+ */
+final class MoodRollups {
+    // Months since year 0, so consecutive months have consecutive keys
+    private final Map<Integer, Segment> months = new HashMap<>();
+
+    /**
+     * Recomputes every month from the day arrays.
+     */
+    void rebuild(long baseEpochDay, byte[] moods, byte[] ratings) {
+        months.clear();
+        if (moods.length == 0) {
+            return;
+        }
+        YearMonth month = YearMonth.from(LocalDate.ofEpochDay(baseEpochDay));
+        YearMonth last = YearMonth.from(LocalDate.ofEpochDay(baseEpochDay + moods.length - 1));
+        while (!month.isAfter(last)) {
+            refresh(month, baseEpochDay, moods, ratings);
+            month = month.plusMonths(1);
+        }
+    }
+
+    /**
+     * Recomputes the month containing the given day.
+     */
+    void refresh(long epochDay, long baseEpochDay, byte[] moods, byte[] ratings) {
+        refresh(YearMonth.from(LocalDate.ofEpochDay(epochDay)), baseEpochDay, moods, ratings);
+    }
+
+    MoodStatistics statistics(LocalDate from, LocalDate to, long baseEpochDay, byte[] moods, byte[] ratings) {
+        Segment total = null;
+        YearMonth month = YearMonth.from(from);
+        YearMonth last = YearMonth.from(to);
+        while (!month.isAfter(last)) {
+            LocalDate start = month.atDay(1);
+            LocalDate end = month.atEndOfMonth();
+            Segment segment;
+            if (start.isBefore(from) || end.isAfter(to)) {
+                // Partial month at either end of the range: scan just those days
+                segment = scan(max(start, from).toEpochDay(), min(end, to).toEpochDay(), baseEpochDay, moods, ratings);
+            } else {
+                segment = months.get(key(month));
+                if (segment == null) {
+                    segment = Segment.empty(month.lengthOfMonth());
+                }
+            }
+            total = total == null ? segment : total.then(segment);
+            month = month.plusMonths(1);
+        }
+        if (total == null) {
+            return new MoodStatistics(from, to, new int[MoodType.count()], 0, 0, 0, 0);
+        }
+        return new MoodStatistics(from, to, total.moodCounts.clone(), total.entries, total.ratingSum,
+                total.best, total.suffix);
+    }
+
+    private void refresh(YearMonth month, long baseEpochDay, byte[] moods, byte[] ratings) {
+        Segment segment = scan(month.atDay(1).toEpochDay(), month.atEndOfMonth().toEpochDay(), baseEpochDay,
+                moods, ratings);
+        if (segment.entries == 0) {
+            months.remove(key(month));
+        } else {
+            months.put(key(month), segment);
+        }
+    }
+
+    private static Segment scan(long fromEpochDay, long toEpochDay, long baseEpochDay, byte[] moods, byte[] ratings) {
+        Segment segment = new Segment((int) (toEpochDay - fromEpochDay + 1));
+        int run = 0;
+        boolean leading = true;
+        for (long day = fromEpochDay; day <= toEpochDay; day++) {
+            long slot = day - baseEpochDay;
+            byte mood = slot >= 0 && slot < moods.length ? moods[(int) slot] : 0;
+            if (mood == 0) {
+                leading = false;
+                run = 0;
+                continue;
+            }
+            if (mood != MoodIndex.UNKNOWN_MOOD) {
+                segment.moodCounts[mood - 1]++;
+            }
+            segment.entries++;
+            segment.ratingSum += ratings[(int) slot];
+            run++;
+            if (leading) {
+                segment.prefix = run;
+            }
+            segment.best = Math.max(segment.best, run);
+        }
+        segment.suffix = run;
+        return segment;
+    }
+
+    private static int key(YearMonth month) {
+        return month.getYear() * 12 + month.getMonthValue() - 1;
+    }
+
+    private static LocalDate max(LocalDate a, LocalDate b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static LocalDate min(LocalDate a, LocalDate b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    private static final class Segment {
+        private final int length;
+        private final int[] moodCounts = new int[MoodType.count()];
+        private int entries;
+        private long ratingSum;
+        // Logged days at the very start, at the very end, and the longest run anywhere
+        private int prefix;
+        private int suffix;
+        private int best;
+
+        Segment(int length) {
+            this.length = length;
+        }
+
+        static Segment empty(int length) {
+            return new Segment(length);
+        }
+
+        // This segment followed directly by the next one
+        Segment then(Segment next) {
+            Segment joined = new Segment(length + next.length);
+            for (int i = 0; i < moodCounts.length; i++) {
+                joined.moodCounts[i] = moodCounts[i] + next.moodCounts[i];
+            }
+            joined.entries = entries + next.entries;
+            joined.ratingSum = ratingSum + next.ratingSum;
+            joined.prefix = prefix == length ? length + next.prefix : prefix;
+            joined.suffix = next.suffix == next.length ? next.length + suffix : next.suffix;
+            joined.best = Math.max(Math.max(best, next.best), suffix + next.prefix);
+            return joined;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package moodtracker;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Mood statistics for a date range: how often each mood was logged, the average
+ * rating, and streaks of consecutive days with an entry. Produced from the per-month
+ * rollups kept by {@link MoodIndex#statistics}.
+ */
+public final class MoodStatistics {
+
+    /**
+     * Calendar buckets for {@link MoodIndex#statisticsBy}. Weeks start on Monday.
+     */
+    public enum Period {
+        WEEK,
+        MONTH,
+        YEAR;
+
+        public LocalDate startOf(LocalDate date) {
+            switch (this) {
+                case WEEK:
+                    return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MONTH:
+                    return date.withDayOfMonth(1);
+                default:
+                    return date.withDayOfYear(1);
+            }
+        }
+
+        public LocalDate next(LocalDate start) {
+            switch (this) {
+                case WEEK:
+                    return start.plusWeeks(1);
+                case MONTH:
+                    return start.plusMonths(1);
+                default:
+                    return start.plusYears(1);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name().charAt(0) + name().substring(1).toLowerCase();
+        }
+    }
+
+    private final LocalDate from;
+    private final LocalDate to;
+    private final int[] moodCounts;
+    private final int entryCount;
+    private final long ratingSum;
+    private final int longestStreak;
+    private final int currentStreak;
+
+    MoodStatistics(LocalDate from, LocalDate to, int[] moodCounts, int entryCount, long ratingSum,
+                   int longestStreak, int currentStreak) {
+        this.from = from;
+        this.to = to;
+        this.moodCounts = moodCounts;
+        this.entryCount = entryCount;
+        this.ratingSum = ratingSum;
+        this.longestStreak = longestStreak;
+        this.currentStreak = currentStreak;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    public int getMoodCount(MoodType mood) {
+        return moodCounts[mood.ordinal()];
+    }
+
+    // Entries per mood, indexed by MoodType ordinal
+    public int[] getMoodCounts() {
+        return moodCounts.clone();
+    }
+
+    // Average rating of the entries in the range, or 0 if there are none
+    public double getAverageRating() {
+        return entryCount == 0 ? 0 : (double) ratingSum / entryCount;
+    }
+
+    // The most frequently logged mood, or null if there are no entries
+    public MoodType getMostCommonMood() {
+        int best = -1;
+        for (int i = 0; i < moodCounts.length; i++) {
+            if (moodCounts[i] > 0 && (best < 0 || moodCounts[i] > moodCounts[best])) {
+                best = i;
+            }
+        }
+        return best < 0 ? null : MoodType.fromOrdinal(best);
+    }
+
+    // Longest run of consecutive days with an entry inside the range
+    public int getLongestStreak() {
+        return longestStreak;
+    }
+
+    // Run of consecutive days with an entry that ends on the last day of the range
+    public int getCurrentStreak() {
+        return currentStreak;
+    }
+}
@@ -0,0 +1,107 @@
+package moodtracker;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Storage engine behind {@link MoodRepository}. Implementations report failures as
+ * {@link SQLException} whatever their medium, so callers handle every engine alike.
+ * Which engine is used is chosen by {@link MoodStores#getDefault()}.
+ */
+public interface MoodStore extends AutoCloseable {
+
+    /**
+     * Inserts a new entry, failing if the date already has one.
+     */
+    void saveMoodEntry(LocalDate date, String mood, String gratitudeText, int rating) throws SQLException;
+
+    /**
+     * Inserts the entry for the given date or overwrites the existing one atomically.
+     */
+    void upsertMoodEntry(LocalDate date, String mood, String gratitudeText, int rating) throws SQLException;
+
+    void updateMoodEntry(LocalDate date, String mood, String gratitudeText, int rating) throws SQLException;
+
+    void deleteMoodEntryByDate(LocalDate date) throws SQLException;
+
+    /**
+     * Applies writes for distinct dates. Engines that can do so apply the whole batch
+     * atomically and with a single commit; this default applies them one by one.
+     */
+    default void applyBatch(List<MoodWrite> writes) throws SQLException {
+        for (MoodWrite write : writes) {
+            switch (write.getType()) {
+                case UPSERT:
+                    upsertMoodEntry(write.getDate(), write.getMood(), write.getGratitude(), write.getRating());
+                    break;
+                case UPDATE:
+                    updateMoodEntry(write.getDate(), write.getMood(), write.getGratitude(), write.getRating());
+                    break;
+                case DELETE:
+                    deleteMoodEntryByDate(write.getDate());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown write type: " + write.getType());
+            }
+        }
+    }
+
+    /**
+     * Full entries for one date; empty if there is none.
+     */
+    List<Mood> getMoodsByDate(LocalDate date) throws SQLException;
+
+    /**
+     * Every full entry, ordered by date.
+     */
+    List<Mood> getAllEntries() throws SQLException;
+
+    /**
+     * Passes every full entry to {@code action} in date order while holding only a
+     * bounded number of them in memory. This default reads them all at once; engines
+     * override it.
+     */
+    default void streamEntries(Consumer<Mood> action) throws SQLException {
+        for (Mood mood : getAllEntries()) {
+            action.accept(mood);
+        }
+    }
+
+    /**
+     * Summaries (no gratitude body, see {@link Mood#getGratitudePreview()}) between two
+     * dates, both inclusive, ordered by date.
+     */
+    List<Mood> getMoodsBetween(LocalDate start, LocalDate end) throws SQLException;
+
+    /**
+     * Summaries of up to {@code limit} entries dated strictly after {@code after}, or
+     * from the first entry when {@code after} is null, ordered by date.
+     */
+    List<Mood> getEntriesAfter(LocalDate after, int limit) throws SQLException;
+
+    /**
+     * Date of the entry at the given zero-based position in date order, or null.
+     */
+    LocalDate getEntryDateAt(int offset) throws SQLException;
+
+    String getGratitude(LocalDate date) throws SQLException;
+
+    int countEntries() throws SQLException;
+
+    List<LocalDate> getDatesWithEntries() throws SQLException;
+
+    /**
+     * A value that changes whenever any entry is written, so a cache persisted alongside
+     * it can tell on the next start whether it is still current. Null if the engine
+     * cannot tell, in which case nothing persisted should be trusted.
+     */
+    default String getChangeMarker() throws SQLException {
+        return null;
+    }
+
+    @Override
+    default void close() throws SQLException {
+    }
+}
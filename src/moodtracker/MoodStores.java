@@ -0,0 +1,80 @@
+package moodtracker;
+
+import java.nio.file.Paths;
+import java.sql.SQLException;
+
+/**
+ * Chooses the storage engine from {@code moodtracker.store}: {@code mysql} (the
+ * default) or {@code file} for the embedded memory-mapped log at
+ * {@code moodtracker.store.file}. Unless {@code moodtracker.snapshot.enabled} is false,
+ * a server engine is read through a local {@link SnapshotMoodStore}, and unless
+ * {@code moodtracker.writeBehind.enabled} is false, writes to the default store go
+ * through a {@link WriteBehindMoodStore}.
+ */
+public final class MoodStores {
+    private static MoodStore defaultStore;
+
+    private MoodStores() {
+    }
+
+    public static synchronized MoodStore getDefault() {
+        if (defaultStore == null) {
+            MoodStore store = open(AppConfig.get("moodtracker.store", "mysql"));
+            if (store instanceof SyncableMoodStore && AppConfig.getBoolean("moodtracker.snapshot.enabled", true)) {
+                try {
+                    SnapshotMoodStore snapshot = SnapshotMoodStore.open((SyncableMoodStore) store);
+                    snapshot.addSyncListener(MoodRepository::applyExternalWrites);
+                    store = snapshot;
+                } catch (SQLException e) {
+                    System.err.println("Could not open the local snapshot, reading from the server: " + e.getMessage());
+                }
+            }
+            if (AppConfig.getBoolean("moodtracker.writeBehind.enabled", true)) {
+                WriteBehindMoodStore writeBehind = new WriteBehindMoodStore(store);
+                // Views were told a rejected write succeeded; show them what is stored instead
+                writeBehind.addRejectionListener(MoodRepository::applyExternalWrites);
+                store = writeBehind;
+            }
+            defaultStore = store;
+            Runtime.getRuntime().addShutdownHook(new Thread(MoodStores::closeDefault, "mood-store-shutdown"));
+        }
+        return defaultStore;
+    }
+
+    // Whether getDefault() has opened the default store, for harnesses that must not touch it
+    static synchronized boolean isDefaultOpen() {
+        return defaultStore != null;
+    }
+
+    // Whether the given store is the default one, without opening it
+    static synchronized boolean isDefault(MoodStore store) {
+        return defaultStore != null && store == defaultStore;
+    }
+
+    static MoodStore open(String engine) {
+        switch (engine.toLowerCase()) {
+            case "mysql":
+            case "jdbc":
+                return new JdbcMoodStore();
+            case "file":
+            case "embedded":
+                try {
+                    return new MappedFileMoodStore(Paths.get(AppConfig.get("moodtracker.store.file", "data/moods.db")));
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Could not open embedded mood store: " + e.getMessage(), e);
+                }
+            default:
+                throw new IllegalArgumentException("Unknown moodtracker.store engine: " + engine);
+        }
+    }
+
+    private static synchronized void closeDefault() {
+        if (defaultStore != null) {
+            try {
+                defaultStore.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing mood store: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -3,19 +3,27 @@ package moodtracker;
 import javax.swing.*;
 import java.util.*;
 import java.util.List;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.TableColumnModel;
 
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.sql.SQLException;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 
 public class MoodTrackerApp {
 
     public static void main(String[] args) {
+        if (Arrays.asList(args).contains("--server")) {
+            MoodApiServer.main(args); // Headless; see MoodApiServer for the endpoints
+            return;
+        }
+        EdtStallDetector.start();
+        MoodIcons.getShared().load(); // Decodes while Swing starts up
         SwingUtilities.invokeLater(() -> {
             MoodTrackerFrame frame = new MoodTrackerFrame();
             frame.setVisible(true);
@@ -24,9 +32,14 @@ public class MoodTrackerApp {
 }
 
 class MoodTrackerFrame extends JFrame {
-    private final JComboBox<IconLabel> moodComboBox;
+    private final JComboBox<MoodType> moodComboBox;
     private final JTextArea gratitudeTextArea;
     private final JSlider ratingSlider;
+    private final JLabel statusLabel = new JLabel(" ");
+    private final AsyncMoodRepository moodRepository = new AsyncMoodRepository();
+    private JButton submitButton;
+    private JButton deleteButton;
+    private boolean painted;
 
     public MoodTrackerFrame() {
         // Frame settings
@@ -49,17 +62,10 @@ class MoodTrackerFrame extends JFrame {
         JPanel moodPanel = new JPanel();
         moodPanel.setLayout(new FlowLayout(FlowLayout.LEFT));
         JLabel moodLabel = new JLabel("Mood:");
-        moodComboBox = new JComboBox<>(new IconLabel[]{
-                new IconLabel("Happy", resizeIcon(new ImageIcon("icons/happy.png"), 32, 32)),
-                new IconLabel("Sad", resizeIcon(new ImageIcon("icons/sad.png"), 32, 32)),
-                new IconLabel("Anxious", resizeIcon(new ImageIcon("icons/anxious.png"), 35, 35)),
-                new IconLabel("Excited", resizeIcon(new ImageIcon("icons/excited.png"), 35, 35)),
-                new IconLabel("Calm", resizeIcon(new ImageIcon("icons/calm.png"), 32, 32)),
-                new IconLabel("Angry", resizeIcon(new ImageIcon("icons/angry.png"), 32, 32)),
-                new IconLabel("Neutral", resizeIcon(new ImageIcon("icons/neutral.png"), 32, 32)),
-
-            });
+        moodComboBox = new JComboBox<>(MoodType.values());
         moodComboBox.setRenderer(new ComboBoxRenderer());
+        // Icons are decoded off the EDT; the renderer shows blank space of the same size until then
+        MoodIcons.getShared().load().thenRunAsync(moodComboBox::repaint, AsyncMoodRepository.EDT);
         moodPanel.add(moodLabel);
         moodPanel.add(moodComboBox);
         
@@ -91,40 +97,27 @@ class MoodTrackerFrame extends JFrame {
         // Buttons
         JPanel buttonPanel = new JPanel();
         buttonPanel.setLayout(new FlowLayout(FlowLayout.CENTER));
-        JButton submitButton = new JButton("Submit");
+        submitButton = new JButton("Submit");
         JButton viewEntriesButton = new JButton("View Entries");
 
         submitButton.addActionListener(new SubmitAction());
-        viewEntriesButton.addActionListener(e -> SwingUtilities.invokeLater(() -> {
-			try {
-				new ViewEntriesFrame();
-			} catch (SQLException e1) {
-				// TODO Auto-generated catch block
-				e1.printStackTrace();
-			}
-		}));
+        viewEntriesButton.addActionListener(e -> SwingUtilities.invokeLater(ViewEntriesFrame::new));
 
         buttonPanel.add(submitButton);
         buttonPanel.add(viewEntriesButton);
         
-        // Fetch today's mood entry and pre-fill the fields if exists
-        MoodRepository moodRepos = new MoodRepository();
-        try {
-            Mood todayMood = moodRepos.getMoodEntryForToday();
-            if (todayMood != null) {
-                // Pre-fill the mood, gratitude, and rating if today's entry exists
-                moodComboBox.setSelectedItem(new IconLabel(todayMood.getMood(), null)); 
-                gratitudeTextArea.setText(todayMood.getGratitude());
-                ratingSlider.setValue(todayMood.getRating());
-            }
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-        }
-        
         JButton calendarButton = new JButton("View Calendar");
         calendarButton.addActionListener(e -> SwingUtilities.invokeLater(() -> new CalendarFrame()));
         buttonPanel.add(calendarButton);
 
+        JButton statisticsButton = new JButton("Statistics");
+        statisticsButton.addActionListener(e -> SwingUtilities.invokeLater(StatisticsFrame::new));
+        buttonPanel.add(statisticsButton);
+
+        JButton heatmapButton = new JButton("Heatmap");
+        heatmapButton.addActionListener(e -> SwingUtilities.invokeLater(MoodHeatmapFrame::new));
+        buttonPanel.add(heatmapButton);
+
 
         // Add components to the main panel
         mainPanel.add(dateLabel);
@@ -136,7 +129,7 @@ class MoodTrackerFrame extends JFrame {
         mainPanel.add(gratitudePanel);
         mainPanel.add(Box.createRigidArea(new Dimension(0, 20)));
         
-        JButton deleteButton = new JButton("Delete Today's Entry");
+        deleteButton = new JButton("Delete Today's Entry");
         deleteButton.setAlignmentX(Component.CENTER_ALIGNMENT);
         deleteButton.addActionListener(new DeleteAction());  // Add the DeleteAction listener
 
@@ -145,24 +138,97 @@ class MoodTrackerFrame extends JFrame {
 
         // Add main panel to frame
         add(mainPanel, BorderLayout.CENTER);
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(0, 10, 5, 10));
+        add(statusLabel, BorderLayout.SOUTH);
+
+        loadTodayEntry();
+        MoodChangeBus.getShared().subscribeOnEdt(this::applyChanges);
+    }
+
+    @Override
+    public void paint(Graphics g) {
+        super.paint(g);
+        if (!painted) {
+            painted = true;
+            Metrics.recordFirstPaint();
+            // Whole-history indexes are only needed by the other windows; start them once we are on screen
+            SwingUtilities.invokeLater(() -> {
+                MoodRepository repository = new MoodRepository();
+                MoodIndex.getShared().ensureLoaded(repository);
+                GratitudeSearchIndex.getShared().ensureLoaded(repository);
+            });
+        }
+    }
+
+    // Fetch today's mood entry in the background and pre-fill the fields if it exists
+    private void loadTodayEntry() {
+        setBusy(true, "Loading today's entry...");
+        moodRepository.getMoodEntryForToday().whenCompleteAsync((todayMood, error) -> {
+            setBusy(false, " ");
+            if (error != null) {
+                AsyncMoodRepository.unwrap(error).printStackTrace();
+                statusLabel.setText("Could not load today's entry.");
+            } else if (todayMood != null) {
+                // Pre-fill the mood, gratitude, and rating if today's entry exists
+                selectMood(todayMood.getMood());
+                gratitudeTextArea.setText(todayMood.getGratitude());
+                ratingSlider.setValue(todayMood.getRating());
+            }
+        }, AsyncMoodRepository.EDT);
+    }
+
+    // Today's entry deleted from another window: clear the form as our own delete does
+    private void applyChanges(List<MoodChangeEvent> events) {
+        for (MoodChangeEvent event : events) {
+            if (event.getType() == MoodChangeEvent.Type.DELETED && LocalDate.now().equals(event.getDate())) {
+                clearForm();
+            }
+        }
+    }
+
+    private void clearForm() {
+        moodComboBox.setSelectedIndex(0);  // Reset the mood combobox to the first item
+        gratitudeTextArea.setText("");      // Clear the gratitude text area
+        ratingSlider.setValue(0);          // Reset the rating slider
+    }
+
+    private void selectMood(String mood) {
+        MoodType type = MoodType.fromName(mood);
+        if (type != null) {
+            moodComboBox.setSelectedItem(type);
+        }
+    }
+
+    private void setBusy(boolean busy, String status) {
+        submitButton.setEnabled(!busy);
+        deleteButton.setEnabled(!busy);
+        setCursor(busy ? Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR) : Cursor.getDefaultCursor());
+        statusLabel.setText(status);
     }
 
     private class SubmitAction implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent e) {
-            IconLabel selectedMood = (IconLabel) moodComboBox.getSelectedItem();
+            MoodType selectedMood = (MoodType) moodComboBox.getSelectedItem();
             String gratitudeText = gratitudeTextArea.getText();
             int rating = ratingSlider.getValue();
             LocalDate currentDate = LocalDate.now();
 
-            MoodRepository moodRepos = new MoodRepository();
-
+            Metrics.UiSpan span = Metrics.startUi("MoodTrackerFrame.submit");
             try {
-                moodRepos.saveOrUpdateMoodEntry(currentDate, selectedMood.getText(), gratitudeText, rating);
-                JOptionPane.showMessageDialog(MoodTrackerFrame.this, "Mood entry saved/updated successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
-                gratitudeTextArea.setText(""); // Clear the text area
-            } catch (SQLException ex) {
-                JOptionPane.showMessageDialog(MoodTrackerFrame.this, "Error saving mood entry: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                setBusy(true, "Saving...");
+                moodRepository.saveOrUpdateMoodEntry(currentDate, selectedMood.getDisplayName(), gratitudeText, rating)
+                        .whenCompleteAsync((ignored, error) -> {
+                            setBusy(false, " ");
+                            if (error == null) {
+                                JOptionPane.showMessageDialog(MoodTrackerFrame.this, "Mood entry saved/updated successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
+                                gratitudeTextArea.setText(""); // Clear the text area
+                            } else {
+                                JOptionPane.showMessageDialog(MoodTrackerFrame.this, "Error saving mood entry: " + AsyncMoodRepository.unwrap(error).getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                            }
+                        }, AsyncMoodRepository.EDT);
+            } finally {
+                span.close();
             }
         }
     }
@@ -171,64 +237,65 @@ class MoodTrackerFrame extends JFrame {
         @Override
         public void actionPerformed(ActionEvent e) {
             LocalDate currentDate = LocalDate.now();
-            MoodRepository moodRepos = new MoodRepository();
 
+            int confirmation = JOptionPane.showConfirmDialog(MoodTrackerFrame.this,
+                    "Are you sure you want to delete today's mood entry?",
+                    "Confirm Deletion",
+                    JOptionPane.YES_NO_OPTION);
+            if (confirmation != JOptionPane.YES_OPTION) {
+                return;
+            }
+
+            // Timed after the confirmation so the modal dialog does not count as handler time
+            Metrics.UiSpan span = Metrics.startUi("MoodTrackerFrame.delete");
             try {
-                int confirmation = JOptionPane.showConfirmDialog(MoodTrackerFrame.this,
-                        "Are you sure you want to delete today's mood entry?",
-                        "Confirm Deletion",
-                        JOptionPane.YES_NO_OPTION);
-                
-                if (confirmation == JOptionPane.YES_OPTION) {
-                    moodRepos.deleteMoodEntryByDate(currentDate);
+                deleteToday(currentDate);
+            } finally {
+                span.close();
+            }
+        }
+
+        private void deleteToday(LocalDate currentDate) {
+            setBusy(true, "Deleting...");
+            moodRepository.deleteMoodEntryByDate(currentDate).whenCompleteAsync((ignored, error) -> {
+                setBusy(false, " ");
+                if (error == null) {
                     JOptionPane.showMessageDialog(MoodTrackerFrame.this, "Mood entry for today has been deleted.", "Success", JOptionPane.INFORMATION_MESSAGE);
-                    
+
                     // Optionally, clear the UI fields after deletion
-                    moodComboBox.setSelectedIndex(0);  // Reset the mood combobox to the first item
-                    gratitudeTextArea.setText("");      // Clear the gratitude text area
-                    ratingSlider.setValue(0);          // Reset the rating slider
+                    clearForm();
+                } else {
+                    JOptionPane.showMessageDialog(MoodTrackerFrame.this, "Error deleting mood entry: " + AsyncMoodRepository.unwrap(error).getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
                 }
-            } catch (SQLException ex) {
-                JOptionPane.showMessageDialog(MoodTrackerFrame.this, "Error deleting mood entry: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            }, AsyncMoodRepository.EDT);
         }
     }
-
-    
-    private ImageIcon resizeIcon(ImageIcon icon, int width, int height) {
-        Image img = icon.getImage();
-        Image resizedImg = img.getScaledInstance(width, height, Image.SCALE_SMOOTH);
-        return new ImageIcon(resizedImg);
-    }
 }
 
 class ViewEntriesFrame extends JFrame {
-    private JTable table;
-    private DefaultTableModel tableModel;
+    private static final int MAX_SEARCH_HITS = 200;
 
-    public ViewEntriesFrame() throws SQLException {
+    private JTable table;
+    private LazyMoodTableModel tableModel;
+    private final JButton deleteButton;
+    private final AsyncMoodRepository moodRepository = new AsyncMoodRepository();
+    private final JTextField searchField = new JTextField(20);
+    private final JLabel searchStatusLabel = new JLabel(" ");
+    private final DefaultListModel<GratitudeSearchIndex.SearchHit> hitsModel = new DefaultListModel<>();
+    private final JList<GratitudeSearchIndex.SearchHit> hitsList = new JList<>(hitsModel);
+    private final JScrollPane hitsScrollPane = new JScrollPane(hitsList);
+    // Waits for a pause in typing before searching
+    private final javax.swing.Timer searchTimer = new javax.swing.Timer(150, e -> runSearch());
+
+    public ViewEntriesFrame() {
         // Frame settings
         setTitle("View Mood Entries");
         setSize(600, 400);
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         setLocationRelativeTo(null);
 
-        String[] columnNames = {"Date", "Mood", "Gratitude", "Rating"};
-        // Get mood entries from the repository
-        List<Mood> moods = new MoodRepository().getAllEntries();
-
-        // Prepare data for the table
-        Object[][] data = new Object[moods.size()][4];
-        for (int i = 0; i < moods.size(); i++) {
-            Mood mood = moods.get(i);
-            data[i][0] = mood.getDate();      // Date
-            data[i][1] = mood.getMood();      // Mood
-            data[i][2] = mood.getGratitude(); // Gratitude
-            data[i][3] = mood.getRating();    // Rating
-        }
-
-        // Initialize tableModel and table
-        tableModel = new DefaultTableModel(data, columnNames);
+        // Initialize tableModel and table; pages of rows are fetched as they scroll into view
+        tableModel = new LazyMoodTableModel(new MoodRepository());
         table = new JTable(tableModel);
         table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         JScrollPane scrollPane = new JScrollPane(table);
@@ -243,16 +310,139 @@ class ViewEntriesFrame extends JFrame {
         columnModel.getColumn(2).setPreferredWidth(400); // Set a larger width for Gratitude
 
         // Add Delete Button
-        JButton deleteButton = new JButton("Delete Selected Entry");
+        deleteButton = new JButton("Delete Selected Entry");
         deleteButton.addActionListener(e -> deleteSelectedEntry());
 
+        // Search box over the gratitude text; hits are listed beside the table
+        JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        searchPanel.add(new JLabel("Search gratitude:"));
+        searchPanel.add(searchField);
+        searchPanel.add(searchStatusLabel);
+        searchTimer.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+        });
+        hitsList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        hitsList.setCellRenderer(new SearchHitRenderer());
+        hitsList.addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting() && hitsList.getSelectedValue() != null) {
+                showEntry(hitsList.getSelectedValue().getDate());
+            }
+        });
+        hitsScrollPane.setPreferredSize(new Dimension(170, 0));
+        hitsScrollPane.setVisible(false);
+
         // Layout
         JPanel panel = new JPanel(new BorderLayout());
+        panel.add(searchPanel, BorderLayout.NORTH);
+        panel.add(hitsScrollPane, BorderLayout.WEST);
         panel.add(scrollPane, BorderLayout.CENTER);
         panel.add(deleteButton, BorderLayout.SOUTH);
 
         add(panel);
         setVisible(true);
+
+        // Writes from any window patch the rows they touch instead of reloading the table
+        MoodChangeBus.Subscription changes = MoodChangeBus.getShared().subscribeOnEdt(this::applyChanges);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                changes.cancel();
+            }
+        });
+        loadEntries();
+        GratitudeSearchIndex.getShared().ensureLoaded(new MoodRepository());
+    }
+
+    private void runSearch() {
+        String query = searchField.getText().trim();
+        GratitudeSearchIndex index = GratitudeSearchIndex.getShared();
+        if (query.isEmpty()) {
+            hitsModel.clear();
+            hitsScrollPane.setVisible(false);
+            searchStatusLabel.setText(" ");
+            revalidate();
+            return;
+        }
+        if (!index.isLoaded()) {
+            searchStatusLabel.setText("Indexing...");
+            index.ensureLoaded(new MoodRepository()).whenCompleteAsync((loaded, error) -> {
+                if (error != null) {
+                    searchStatusLabel.setText("Search unavailable: " + AsyncMoodRepository.unwrap(error).getMessage());
+                } else if (query.equals(searchField.getText().trim())) {
+                    runSearch();
+                }
+            }, AsyncMoodRepository.EDT);
+            return;
+        }
+
+        // The index is in memory, so searching on the EDT takes well under a millisecond
+        Metrics.UiSpan span = Metrics.startUi("ViewEntriesFrame.search");
+        try {
+            long start = System.nanoTime();
+            List<GratitudeSearchIndex.SearchHit> hits = index.search(query, MAX_SEARCH_HITS);
+            long micros = (System.nanoTime() - start) / 1_000;
+            hitsModel.clear();
+            for (GratitudeSearchIndex.SearchHit hit : hits) {
+                hitsModel.addElement(hit);
+            }
+            hitsScrollPane.setVisible(true);
+            searchStatusLabel.setText((hits.size() == MAX_SEARCH_HITS ? "Top " : "") + hits.size()
+                    + (hits.size() == 1 ? " match" : " matches") + " in " + micros + " \u00b5s");
+            revalidate();
+        } finally {
+            span.close();
+        }
+    }
+
+    private void applyChanges(List<MoodChangeEvent> events) {
+        if (!tableModel.applyChanges(events)) {
+            loadEntries();
+        }
+        if (!searchField.getText().trim().isEmpty()) {
+            searchTimer.restart(); // Hits may have been added or removed
+        }
+    }
+
+    // Selects the entry's row; its position in date order is known from the mood index
+    private void showEntry(LocalDate date) {
+        MoodIndex index = MoodIndex.getShared();
+        if (!index.isLoaded() || !index.contains(date.toEpochDay())) {
+            return;
+        }
+        int row = index.rankOf(date.toEpochDay());
+        if (row < tableModel.getRowCount()) {
+            table.setRowSelectionInterval(row, row);
+            table.scrollRectToVisible(table.getCellRect(row, 0, true));
+        }
+    }
+
+    private void loadEntries() {
+        setBusy(true);
+        tableModel.reload(error -> {
+            setBusy(false);
+            if (error != null) {
+                JOptionPane.showMessageDialog(this, "Error loading entries: " + AsyncMoodRepository.unwrap(error).getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+    }
+
+    private void setBusy(boolean busy) {
+        deleteButton.setEnabled(!busy);
+        setCursor(busy ? Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR) : Cursor.getDefaultCursor());
     }
 
     private void deleteSelectedEntry() {
@@ -263,50 +453,53 @@ class ViewEntriesFrame extends JFrame {
         }
 
         // Get the date of the selected row
-        LocalDate dateToDelete = LocalDate.parse(tableModel.getValueAt(selectedRow, 0).toString());
+        Mood selectedMood = tableModel.getMoodAt(selectedRow);
+        if (selectedMood == null) {
+            return; // Row is still loading
+        }
+        LocalDate dateToDelete = selectedMood.getDate();
 
         // Delete the entry from the database
+        Metrics.UiSpan span = Metrics.startUi("ViewEntriesFrame.delete");
         try {
-            MoodRepository moodRepository = new MoodRepository();
-            moodRepository.deleteMoodEntryByDate(dateToDelete);
-
-            // Remove the row from the table model
-            tableModel.removeRow(selectedRow);
-            JOptionPane.showMessageDialog(this, "Entry deleted successfully.", "Success", JOptionPane.INFORMATION_MESSAGE);
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(this, "Error deleting entry: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            deleteEntry(dateToDelete);
+        } finally {
+            span.close();
         }
     }
-}
-
-class IconLabel {
-    private final String text;
-    private final Icon icon;
-
-    public IconLabel(String text, Icon icon) {
-        this.text = text;
-        this.icon = icon;
-    }
 
-    public String getText() {
-        return text;
-    }
-
-    public Icon getIcon() {
-        return icon;
+    private void deleteEntry(LocalDate dateToDelete) {
+        setBusy(true);
+        moodRepository.deleteMoodEntryByDate(dateToDelete).whenCompleteAsync((ignored, error) -> {
+            setBusy(false);
+            if (error == null) {
+                // The row was already removed by the change event published for this delete
+                JOptionPane.showMessageDialog(this, "Entry deleted successfully.", "Success", JOptionPane.INFORMATION_MESSAGE);
+            } else {
+                JOptionPane.showMessageDialog(this, "Error deleting entry: " + AsyncMoodRepository.unwrap(error).getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }, AsyncMoodRepository.EDT);
     }
+}
 
+class SearchHitRenderer extends DefaultListCellRenderer {
     @Override
-    public String toString() {
-        return text;
+    public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+        super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+        if (value instanceof GratitudeSearchIndex.SearchHit) {
+            LocalDate date = ((GratitudeSearchIndex.SearchHit) value).getDate();
+            MoodType mood = MoodType.fromOrdinal(MoodIndex.getShared().moodOrdinalAt(date.toEpochDay()));
+            setText(mood != null ? date + "  " + mood.getDisplayName() : date.toString());
+        }
+        return this;
     }
 }
 
-class ComboBoxRenderer extends JLabel implements ListCellRenderer<IconLabel> {
+class ComboBoxRenderer extends JLabel implements ListCellRenderer<MoodType> {
     @Override
-    public Component getListCellRendererComponent(JList<? extends IconLabel> list, IconLabel value, int index, boolean isSelected, boolean cellHasFocus) {
-        setText(value.getText());
-        setIcon(value.getIcon());
+    public Component getListCellRendererComponent(JList<? extends MoodType> list, MoodType value, int index, boolean isSelected, boolean cellHasFocus) {
+        setText(value.getDisplayName());
+        setIcon(MoodIcons.getShared().getIcon(value));
         setOpaque(true);
         setBackground(isSelected ? Color.LIGHT_GRAY : Color.WHITE);
         return this;
@@ -0,0 +1,378 @@
+package moodtracker;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Bulk import and export of the mood history as CSV (with a
+ * {@code date,mood,rating,gratitude} header) or JSON lines (one object with the same
+ * fields per line). Both directions stream: an import reads a chunk of
+ * {@code moodtracker.transfer.chunkSize} rows, applies it with
+ * {@link MoodStore#applyBatch} in one transaction and moves on, and an export writes
+ * rows as {@link MoodStore#streamEntries} produces them. Imported rows overwrite the
+ * entry already stored for their date.
+ *
+ * <pre>
+ * java -cp bin:... moodtracker.MoodTransfer export backup.csv
+ * java -cp bin:... moodtracker.MoodTransfer import backup.jsonl
+ * </pre>
+ */
+public final class MoodTransfer {
+    private static final int CHUNK_SIZE = Math.max(1, AppConfig.getInt("moodtracker.transfer.chunkSize", 1000));
+
+    public enum Format {
+        CSV,
+        JSON_LINES;
+
+        /**
+         * CSV unless the file name ends in {@code .jsonl}, {@code .ndjson} or {@code .json}.
+         */
+        public static Format forFile(Path file) {
+            String name = file.getFileName().toString().toLowerCase();
+            return name.endsWith(".jsonl") || name.endsWith(".ndjson") || name.endsWith(".json") ? JSON_LINES : CSV;
+        }
+    }
+
+    private MoodTransfer() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 2 || !("import".equals(args[0]) || "export".equals(args[0]))) {
+            System.err.println("Usage: MoodTransfer import|export <file.csv|file.jsonl>");
+            System.exit(2);
+        }
+        Path file = Paths.get(args[1]);
+        Format format = Format.forFile(file);
+        MoodRepository repository = new MoodRepository();
+        long start = System.nanoTime();
+        try {
+            int count;
+            if ("import".equals(args[0])) {
+                try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    count = repository.importEntries(in, format);
+                }
+            } else {
+                try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                    count = repository.exportEntries(out, format);
+                }
+            }
+            System.out.printf("%sed %d entries in %d ms%n", args[0], count, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | SQLException e) {
+            System.err.println(args[0] + " failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Reads every row from {@code in} and upserts them into the store chunk by chunk.
+     * {@code applied} sees each write once its chunk has been committed.
+     *
+     * @return the number of rows read
+     * @throws IOException if the input is malformed, with the offending line number
+     */
+    public static int importEntries(Reader in, Format format, MoodStore store, Consumer<MoodWrite> applied)
+            throws IOException, SQLException {
+        RowReader rows = format == Format.CSV ? new CsvRowReader(in) : new JsonLinesRowReader(in);
+        // Keyed by date so a chunk never carries two writes for one day (the last one wins)
+        Map<LocalDate, MoodWrite> chunk = new LinkedHashMap<>();
+        int count = 0;
+        MoodWrite write;
+        while ((write = rows.next()) != null) {
+            chunk.put(write.getDate(), write);
+            count++;
+            if (chunk.size() == CHUNK_SIZE) {
+                applyChunk(store, chunk, applied);
+            }
+        }
+        applyChunk(store, chunk, applied);
+        return count;
+    }
+
+    /**
+     * Writes every entry in date order to {@code out}, which is flushed but not closed.
+     *
+     * @return the number of entries written
+     */
+    public static int exportEntries(MoodStore store, Writer out, Format format) throws IOException, SQLException {
+        Writer writer = out instanceof BufferedWriter ? out : new BufferedWriter(out);
+        StringBuilder line = new StringBuilder(256);
+        int[] count = {0};
+        try {
+            if (format == Format.CSV) {
+                writer.write("date,mood,rating,gratitude\n");
+            }
+            store.streamEntries(mood -> {
+                line.setLength(0);
+                if (format == Format.CSV) {
+                    appendCsvRow(line, mood);
+                } else {
+                    appendJsonRow(line, mood);
+                }
+                try {
+                    writer.append(line);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                count[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+        return count[0];
+    }
+
+    private static void applyChunk(MoodStore store, Map<LocalDate, MoodWrite> chunk, Consumer<MoodWrite> applied)
+            throws SQLException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        List<MoodWrite> writes = new ArrayList<>(chunk.values());
+        store.applyBatch(writes);
+        chunk.clear();
+        for (MoodWrite write : writes) {
+            applied.accept(write);
+        }
+    }
+
+    private static void appendCsvRow(StringBuilder line, Mood mood) {
+        line.append(mood.getDate()).append(',');
+        appendCsvField(line, mood.getMood());
+        line.append(',').append(mood.getRating()).append(',');
+        appendCsvField(line, mood.getGratitude());
+        line.append('\n');
+    }
+
+    private static void appendCsvField(StringBuilder line, String value) {
+        if (value == null) {
+            return;
+        }
+        boolean quote = value.isEmpty() || value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+
+    private static void appendJsonRow(StringBuilder line, Mood mood) {
+        line.append("{\"date\":\"").append(mood.getDate()).append("\",\"mood\":");
+        Json.appendString(line, mood.getMood());
+        line.append(",\"rating\":").append(mood.getRating()).append(",\"gratitude\":");
+        Json.appendString(line, mood.getGratitude());
+        line.append("}\n");
+    }
+
+    // Validates one row and turns it into an upsert; line is used in error messages
+    private static MoodWrite toWrite(int line, String date, String mood, String rating, String gratitude)
+            throws IOException {
+        if (date == null || date.isEmpty()) {
+            throw new IOException("Line " + line + ": missing date");
+        }
+        LocalDate entryDate;
+        try {
+            entryDate = LocalDate.parse(date.trim());
+        } catch (DateTimeParseException e) {
+            throw new IOException("Line " + line + ": invalid date '" + date + "', expected yyyy-MM-dd");
+        }
+        if (entryDate.isBefore(Mood.MIN_DATE) || entryDate.isAfter(Mood.MAX_DATE)) {
+            throw new IOException("Line " + line + ": date " + entryDate + " is outside "
+                    + Mood.MIN_DATE + " to " + Mood.MAX_DATE);
+        }
+        String name = mood == null ? "" : mood.trim();
+        if (name.isEmpty()) {
+            throw new IOException("Line " + line + ": missing mood");
+        }
+        if (name.length() > Mood.MAX_MOOD_LENGTH) {
+            throw new IOException("Line " + line + ": mood '" + name + "' is longer than " + Mood.MAX_MOOD_LENGTH
+                    + " characters");
+        }
+        // Names outside MoodType are kept as written, as the store keeps them, so an export re-imports
+        MoodType type = MoodType.fromName(name);
+        int value;
+        try {
+            value = Integer.parseInt(rating == null ? "" : rating.trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Line " + line + ": invalid rating '" + rating + "'");
+        }
+        if (value < 1 || value > 5) {
+            throw new IOException("Line " + line + ": rating " + value + " is outside 1-5");
+        }
+        return MoodWrite.upsert(entryDate, type != null ? type.getDisplayName() : name, gratitude, value);
+    }
+
+    private interface RowReader {
+        /**
+         * The next row, or null at the end of the input.
+         */
+        MoodWrite next() throws IOException;
+    }
+
+    private static final class JsonLinesRowReader implements RowReader {
+        private final BufferedReader in;
+        private int lineNumber;
+
+        JsonLinesRowReader(Reader in) {
+            this.in = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+        }
+
+        @Override
+        public MoodWrite next() throws IOException {
+            String line;
+            do {
+                line = in.readLine();
+                lineNumber++;
+                if (line == null) {
+                    return null;
+                }
+            } while (line.trim().isEmpty());
+            Map<String, Object> row;
+            try {
+                row = Json.parseObject(line);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Line " + lineNumber + ": " + e.getMessage());
+            }
+            // A fractional rating such as 4.7 reaches toWrite as written and is rejected there
+            return toWrite(lineNumber, string(row.get("date")), string(row.get("mood")), string(row.get("rating")),
+                    string(row.get("gratitude")));
+        }
+
+        private static String string(Object value) {
+            return value == null ? null : value.toString();
+        }
+    }
+
+    // RFC 4180: quoted fields may contain commas, doubled quotes and line breaks
+    private static final class CsvRowReader implements RowReader {
+        private final Reader in;
+        private final Map<String, Integer> columns = new HashMap<>();
+        private final List<String> fields = new ArrayList<>();
+        private final StringBuilder field = new StringBuilder();
+        private int lineNumber = 1;
+        private int pushedBack = -2;
+
+        CsvRowReader(Reader in) {
+            this.in = in instanceof BufferedReader ? in : new BufferedReader(in);
+        }
+
+        @Override
+        public MoodWrite next() throws IOException {
+            if (columns.isEmpty()) {
+                if (!readRecord()) {
+                    return null;
+                }
+                for (int i = 0; i < fields.size(); i++) {
+                    columns.put(fields.get(i).trim().toLowerCase(), i);
+                }
+                if (!columns.containsKey("date") || !columns.containsKey("mood") || !columns.containsKey("rating")) {
+                    throw new IOException("Line 1: header must name the date, mood and rating columns");
+                }
+            }
+            int line;
+            do {
+                line = lineNumber;
+                if (!readRecord()) {
+                    return null;
+                }
+            } while (fields.size() == 1 && fields.get(0).isEmpty()); // Blank line
+            return toWrite(line, column("date"), column("mood"), column("rating"), column("gratitude"));
+        }
+
+        private String column(String name) {
+            Integer index = columns.get(name);
+            if (index == null || index >= fields.size()) {
+                return null;
+            }
+            String value = fields.get(index);
+            return value.isEmpty() && "gratitude".equals(name) ? null : value;
+        }
+
+        // Reads one record into fields; false at the end of the input
+        private boolean readRecord() throws IOException {
+            fields.clear();
+            field.setLength(0);
+            int c = read();
+            if (c == -1) {
+                return false;
+            }
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        throw new IOException("Line " + lineNumber + ": unterminated quoted field");
+                    }
+                    if (c == '"') {
+                        int next = read();
+                        if (next == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            c = next;
+                            continue;
+                        }
+                    } else {
+                        if (c == '\n') {
+                            lineNumber++;
+                        }
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n' || c == '\r' || c == -1) {
+                    if (c == '\r') {
+                        int next = read();
+                        if (next != '\n') {
+                            pushedBack = next;
+                        }
+                    }
+                    if (c != -1) {
+                        lineNumber++;
+                    }
+                    fields.add(field.toString());
+                    return true;
+                } else {
+                    field.append((char) c);
+                }
+                c = read();
+            }
+        }
+
+        private int read() throws IOException {
+            if (pushedBack != -2) {
+                int c = pushedBack;
+                pushedBack = -2;
+                return c;
+            }
+            return in.read();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package moodtracker;
+
+import java.awt.Color;
+
+/**
+ * The moods offered in {@link MoodTrackerFrame}, one per icon. The ordinal is what
+ * compact structures such as {@link MoodIndex} store, so new moods must be appended.
+ */
+public enum MoodType {
+    HAPPY("Happy", "icons/happy.png", 32, new Color(255, 224, 102)),
+    SAD("Sad", "icons/sad.png", 32, new Color(133, 174, 230)),
+    ANXIOUS("Anxious", "icons/anxious.png", 35, new Color(196, 160, 226)),
+    EXCITED("Excited", "icons/excited.png", 35, new Color(255, 170, 90)),
+    CALM("Calm", "icons/calm.png", 32, new Color(150, 215, 160)),
+    ANGRY("Angry", "icons/angry.png", 32, new Color(236, 112, 99)),
+    NEUTRAL("Neutral", "icons/neutral.png", 32, new Color(200, 200, 200));
+
+    private static final MoodType[] VALUES = values();
+
+    private final String displayName;
+    private final String iconPath;
+    private final int iconSize;
+    private final Color color;
+
+    MoodType(String displayName, String iconPath, int iconSize, Color color) {
+        this.displayName = displayName;
+        this.iconPath = iconPath;
+        this.iconSize = iconSize;
+        this.color = color;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public String getIconPath() {
+        return iconPath;
+    }
+
+    public int getIconSize() {
+        return iconSize;
+    }
+
+    // Background used to mark days logged with this mood, e.g. in CalendarFrame
+    public Color getColor() {
+        return color;
+    }
+
+    /**
+     * Parses a stored mood name, ignoring case. Returns null for null or unknown names.
+     */
+    public static MoodType fromName(String name) {
+        if (name == null) {
+            return null;
+        }
+        for (MoodType type : VALUES) {
+            if (type.displayName.equalsIgnoreCase(name.trim())) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    public static MoodType fromOrdinal(int ordinal) {
+        return ordinal >= 0 && ordinal < VALUES.length ? VALUES[ordinal] : null;
+    }
+
+    public static int count() {
+        return VALUES.length;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
@@ -0,0 +1,98 @@
+package moodtracker;
+
+import java.time.LocalDate;
+
+/**
+ * One pending change to the entry of a single date, as queued by
+ * {@link WriteBehindMoodStore} and applied in bulk by {@link MoodStore#applyBatch}.
+ */
+public final class MoodWrite {
+
+    public enum Type {
+        /** Insert the entry or overwrite the existing one. */
+        UPSERT,
+        /** Overwrite the existing entry; no effect if there is none. */
+        UPDATE,
+        DELETE
+    }
+
+    private final Type type;
+    private final LocalDate date;
+    private final String mood;
+    private final String gratitude;
+    private final int rating;
+
+    private MoodWrite(Type type, LocalDate date, String mood, String gratitude, int rating) {
+        this.type = type;
+        this.date = date;
+        this.mood = mood;
+        this.gratitude = gratitude;
+        this.rating = rating;
+    }
+
+    public static MoodWrite upsert(LocalDate date, String mood, String gratitude, int rating) {
+        return new MoodWrite(Type.UPSERT, date, mood, gratitude, rating);
+    }
+
+    public static MoodWrite update(LocalDate date, String mood, String gratitude, int rating) {
+        return new MoodWrite(Type.UPDATE, date, mood, gratitude, rating);
+    }
+
+    public static MoodWrite delete(LocalDate date) {
+        return new MoodWrite(Type.DELETE, date, null, null, 0);
+    }
+
+    /**
+     * The single write equivalent to applying {@code older} and then {@code newer} to
+     * the same date.
+     */
+    static MoodWrite coalesce(MoodWrite older, MoodWrite newer) {
+        if (older == null || newer.type != Type.UPDATE) {
+            return newer;
+        }
+        switch (older.type) {
+            case UPSERT:
+                // The row will exist by the time the update runs
+                return upsert(newer.date, newer.mood, newer.gratitude, newer.rating);
+            case DELETE:
+                return older; // Updating a deleted entry changes nothing
+            default:
+                return newer;
+        }
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public String getMood() {
+        return mood;
+    }
+
+    public String getGratitude() {
+        return gratitude;
+    }
+
+    public int getRating() {
+        return rating;
+    }
+
+    /**
+     * The entry this write leaves behind, or null for a delete.
+     */
+    Mood toMood() {
+        if (type == Type.DELETE) {
+            return null;
+        }
+        Mood entry = new Mood();
+        entry.setDate(date);
+        entry.setMood(mood);
+        entry.setGratitude(gratitude);
+        entry.setRating(rating);
+        return entry;
+    }
+}
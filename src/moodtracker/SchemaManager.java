@@ -0,0 +1,248 @@
+package moodtracker;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Brings the MySQL schema up to date before {@link JdbcMoodStore} first uses it.
+ * Migrations are numbered and applied in order; each one is recorded in
+ * {@code schema_version} so it runs once per database, and each is written to be
+ * safe to re-run, since MySQL commits DDL immediately and a crash can land between a
+ * change and its record. A named lock keeps two starting instances from migrating
+ * at once.
+ *
+ * <p>Afterwards a self-check EXPLAINs the lookups {@link JdbcMoodStore} runs, using
+ * its own SQL, and warns on stderr if the optimizer did not pick an index for one of
+ * them, i.e. it would scan the whole table as it grows.
+ */
+final class SchemaManager {
+    private static final String LOCK_NAME = "moodtracker.schema";
+    private static final int LOCK_TIMEOUT_SECONDS = 30;
+    private static final String UNIQUE_DATE_INDEX = "uq_moodentries_entryDate";
+    private static final String SUMMARY_INDEX = "ix_moodentries_entryDate_mood_rating";
+    private static final String UPDATED_INDEX = "ix_moodentries_updatedAt";
+    // Below this many rows a full scan is legitimately cheaper, so plans are not checked
+    private static final int PLAN_CHECK_MIN_ROWS = 1000;
+
+    private static final List<Migration> MIGRATIONS = Arrays.asList(
+            new Migration(1, "Create moodentries", stmt -> stmt.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS moodentries ("
+                            + "id INT NOT NULL AUTO_INCREMENT PRIMARY KEY, "
+                            + "mood VARCHAR(20) NOT NULL, "
+                            + "rating INT NOT NULL, "
+                            + "gratitude TEXT, "
+                            + "entryDate DATE NOT NULL)")),
+            new Migration(2, "Unique index on entryDate", SchemaManager::addUniqueDateIndex),
+            // Formerly a covering index on (entryDate, mood, rating); summaries also read a
+            // gratitude preview, so no query could use it. Kept as a no-op so later versions keep
+            // their numbers; migration 6 drops the index where it was created
+            new Migration(3, "Reserved: covering index superseded by migration 6", stmt -> {
+            }),
+            new Migration(4, "Change timestamp on moodentries", stmt -> {
+                if (!hasColumn(stmt, "updatedAt")) {
+                    stmt.executeUpdate("ALTER TABLE moodentries ADD COLUMN updatedAt TIMESTAMP(3) NOT NULL "
+                            + "DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)");
+                }
+                if (!hasIndex(stmt, UPDATED_INDEX)) {
+                    stmt.executeUpdate("CREATE INDEX " + UPDATED_INDEX + " ON moodentries (updatedAt)");
+                }
+            }),
+            // Deletes leave no row to carry a timestamp, so triggers record them for delta sync
+            new Migration(5, "Tombstones for deleted entries", stmt -> {
+                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS moodentries_deleted ("
+                        + "entryDate DATE NOT NULL PRIMARY KEY, "
+                        + "deletedAt TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3), "
+                        + "INDEX ix_moodentries_deleted_deletedAt (deletedAt))");
+                stmt.executeUpdate("DROP TRIGGER IF EXISTS moodentries_after_delete");
+                stmt.executeUpdate("CREATE TRIGGER moodentries_after_delete AFTER DELETE ON moodentries "
+                        + "FOR EACH ROW INSERT INTO moodentries_deleted (entryDate) VALUES (OLD.entryDate) "
+                        + "ON DUPLICATE KEY UPDATE deletedAt = CURRENT_TIMESTAMP(3)");
+                stmt.executeUpdate("DROP TRIGGER IF EXISTS moodentries_after_insert");
+                stmt.executeUpdate("CREATE TRIGGER moodentries_after_insert AFTER INSERT ON moodentries "
+                        + "FOR EACH ROW DELETE FROM moodentries_deleted WHERE entryDate = NEW.entryDate");
+            }),
+            new Migration(6, "Drop unused covering index", stmt -> {
+                if (hasIndex(stmt, SUMMARY_INDEX)) {
+                    stmt.executeUpdate("DROP INDEX " + SUMMARY_INDEX + " ON moodentries");
+                }
+            }));
+
+    private static volatile boolean current;
+
+    private SchemaManager() {
+    }
+
+    /**
+     * Applies any pending migrations and runs the self-check, once per process. A
+     * failure is thrown to the caller and the next call tries again.
+     */
+    static void ensureCurrent() throws SQLException {
+        if (current) {
+            return;
+        }
+        synchronized (SchemaManager.class) {
+            if (current) {
+                return;
+            }
+            try (Connection connection = DatabaseConnection.getConnection();
+                 Statement stmt = connection.createStatement()) {
+                lock(stmt);
+                try {
+                    migrate(connection, stmt);
+                } finally {
+                    stmt.executeQuery("SELECT RELEASE_LOCK('" + LOCK_NAME + "')").close();
+                }
+                verifyPlans(connection, stmt);
+            }
+            current = true;
+        }
+    }
+
+    private static void migrate(Connection connection, Statement stmt) throws SQLException {
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS schema_version ("
+                + "version INT NOT NULL PRIMARY KEY, "
+                + "description VARCHAR(200) NOT NULL, "
+                + "applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+        int version;
+        try (ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            version = rs.next() ? rs.getInt(1) : 0;
+        }
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version <= version) {
+                continue;
+            }
+            migration.step.apply(stmt);
+            try (PreparedStatement record = connection.prepareStatement(
+                    "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+                record.setInt(1, migration.version);
+                record.setString(2, migration.description);
+                record.executeUpdate();
+            }
+            System.err.println("Applied schema migration " + migration.version + ": " + migration.description);
+        }
+    }
+
+    private static void lock(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SELECT GET_LOCK('" + LOCK_NAME + "', " + LOCK_TIMEOUT_SECONDS + ")")) {
+            if (!rs.next() || rs.getInt(1) != 1) {
+                throw new SQLException("Timed out after " + LOCK_TIMEOUT_SECONDS
+                        + " s waiting for another instance to finish migrating the schema.");
+            }
+        }
+    }
+
+    /**
+     * Keeps the most recent row (highest id) of each day, then lets the index enforce one
+     * per day. The older rows are first copied to {@code moodentries_duplicates}, keyed by
+     * their id so a re-run after a crash copies nothing twice, and are only deleted once
+     * the copy is done.
+     */
+    private static void addUniqueDateIndex(Statement stmt) throws SQLException {
+        if (hasUniqueDateIndex(stmt)) {
+            return;
+        }
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS moodentries_duplicates ("
+                + "id INT NOT NULL PRIMARY KEY, "
+                + "mood VARCHAR(20) NOT NULL, "
+                + "rating INT NOT NULL, "
+                + "gratitude TEXT, "
+                + "entryDate DATE NOT NULL, "
+                + "removedAt TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+        stmt.executeUpdate("INSERT IGNORE INTO moodentries_duplicates (id, mood, rating, gratitude, entryDate) "
+                + "SELECT DISTINCT older.id, older.mood, older.rating, older.gratitude, older.entryDate "
+                + "FROM moodentries older "
+                + "JOIN moodentries newer ON older.entryDate = newer.entryDate AND older.id < newer.id");
+        int removed = stmt.executeUpdate("DELETE older FROM moodentries older "
+                + "JOIN moodentries newer ON older.entryDate = newer.entryDate AND older.id < newer.id");
+        if (removed > 0) {
+            System.err.println("Moved " + removed + " duplicate mood entries to moodentries_duplicates "
+                    + "before adding the unique index");
+        }
+        stmt.executeUpdate("ALTER TABLE moodentries ADD UNIQUE INDEX " + UNIQUE_DATE_INDEX + " (entryDate)");
+    }
+
+    private static boolean hasUniqueDateIndex(Statement stmt) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM information_schema.statistics "
+                + "WHERE table_schema = DATABASE() AND table_name = 'moodentries' "
+                + "AND column_name = 'entryDate' AND seq_in_index = 1 AND non_unique = 0";
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() && rs.getInt(1) > 0;
+        }
+    }
+
+    private static boolean hasIndex(Statement stmt, String name) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM information_schema.statistics "
+                + "WHERE table_schema = DATABASE() AND table_name = 'moodentries' AND index_name = '" + name + "'";
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() && rs.getInt(1) > 0;
+        }
+    }
+
+    private static boolean hasColumn(Statement stmt, String name) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM information_schema.columns "
+                + "WHERE table_schema = DATABASE() AND table_name = 'moodentries' AND column_name = '" + name + "'";
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() && rs.getInt(1) > 0;
+        }
+    }
+
+    // Binds today, a row limit and an hour-old timestamp as stand-ins for the real parameters
+    private static void verifyPlans(Connection connection, Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM moodentries")) {
+            if (!rs.next() || rs.getInt(1) < PLAN_CHECK_MIN_ROWS) {
+                return;
+            }
+        }
+        Date today = Date.valueOf(LocalDate.now());
+        verifyPlan(connection, JdbcMoodStore.BY_DATE_SQL, today);
+        verifyPlan(connection, JdbcMoodStore.GRATITUDE_SQL, today);
+        verifyPlan(connection, JdbcMoodStore.BETWEEN_SQL, Date.valueOf(LocalDate.now().minusMonths(1)), today);
+        verifyPlan(connection, JdbcMoodStore.AFTER_SQL, today, 100);
+        verifyPlan(connection, JdbcMoodStore.CHANGED_SINCE_SQL, System.currentTimeMillis() - 3_600_000L);
+    }
+
+    // Warns unless the optimizer chose an index for every table the query reads
+    private static void verifyPlan(Connection connection, String query, Object... parameters) throws SQLException {
+        try (PreparedStatement explain = connection.prepareStatement("EXPLAIN " + query)) {
+            for (int i = 0; i < parameters.length; i++) {
+                explain.setObject(i + 1, parameters[i]);
+            }
+            try (ResultSet rs = explain.executeQuery()) {
+                while (rs.next()) {
+                    if (rs.getString("table") == null || "system".equals(rs.getString("type"))) {
+                        continue; // Single-row or impossible lookup, answered without an access path
+                    }
+                    String key = rs.getString("key");
+                    if (key == null || key.isEmpty()) {
+                        System.err.println("Schema self-check: no index chosen (access type " + rs.getString("type")
+                                + ", possible keys " + rs.getString("possible_keys") + ") for: " + query);
+                    }
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface MigrationStep {
+        void apply(Statement stmt) throws SQLException;
+    }
+
+    private static final class Migration {
+        private final int version;
+        private final String description;
+        private final MigrationStep step;
+
+        Migration(int version, String description, MigrationStep step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+}
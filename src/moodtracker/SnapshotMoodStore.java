@@ -0,0 +1,542 @@
+package moodtracker;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Local snapshot in front of a {@link SyncableMoodStore}: a copy of the whole history
+ * in a local store (an embedded {@link MappedFileMoodStore} file by default) that
+ * answers every read, so windows open at once and keep working while the server is
+ * slow or down. A background delta sync pulls only the rows changed since the previous
+ * one; its watermark is kept in a small file next to the snapshot. Until the first sync
+ * has completed, reads go to the server.
+ *
+ * <p>Writes go to the server first and then to the snapshot, so the snapshot never
+ * holds a change the server refused. Changes the sync brings in from elsewhere are
+ * passed to the sync listeners, which keep the in-memory views current (see
+ * {@link MoodRepository#applyExternalWrites}).
+ *
+ * <p>When the server cannot be reached, a write is appended to a durable
+ * {@link MoodJournal} and applied to the snapshot instead, so it succeeds at local
+ * speed. Until the journal has been replayed, later writes queue behind it to keep
+ * their order. It is replayed every {@code moodtracker.snapshot.replayMs} (default five
+ * seconds) and before each sync, a few dozen writes at a time as the net change per day,
+ * which is idempotent, so a replay interrupted by a crash can simply run again. Each
+ * batch leaves the journal once the server has it. A write the server refuses for a
+ * reason other than a lost connection is moved aside to the journal's {@code .rejected}
+ * file, and its day in the snapshot is reset to what the server holds, so one bad
+ * write cannot keep the journal, and every write after it, from draining.
+ */
+public class SnapshotMoodStore implements MoodStore {
+    private static final int SYNC_BATCH = 500;
+    private static final int REPLAY_BATCH = 50;
+
+    private final SyncableMoodStore remote;
+    private final MoodStore local;
+    private final Path watermarkFile;
+    private final MoodJournal journal;
+    private final ScheduledExecutorService syncer;
+    private final List<Consumer<List<MoodWrite>>> syncListeners = new CopyOnWriteArrayList<>();
+    private final Object syncLock = new Object();
+    // Writes to the snapshot and sync batches take turns, so a sync never overwrites a newer local write
+    private final Object applyLock = new Object();
+    private final Set<LocalDate> writtenDuringSync = new HashSet<>();
+    private volatile long watermark;
+    private volatile boolean syncFailing;
+    private volatile boolean offline;
+
+    public SnapshotMoodStore(SyncableMoodStore remote, MoodStore local, Path watermarkFile, long syncIntervalMs)
+            throws SQLException {
+        this(remote, local, watermarkFile, new MoodJournal(watermarkFile.resolveSibling(
+                        watermarkFile.getFileName() + ".journal")), syncIntervalMs,
+                AppConfig.getLong("moodtracker.snapshot.replayMs", 5_000));
+    }
+
+    SnapshotMoodStore(SyncableMoodStore remote, MoodStore local, Path watermarkFile, MoodJournal journal,
+                      long syncIntervalMs, long replayIntervalMs) {
+        this.remote = remote;
+        this.local = local;
+        this.watermarkFile = watermarkFile;
+        this.journal = journal;
+        this.watermark = readWatermark(watermarkFile);
+        syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mood-snapshot-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (syncIntervalMs > 0) {
+            syncer.scheduleWithFixedDelay(this::syncQuietly, 0, syncIntervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            syncer.execute(this::syncQuietly);
+        }
+        if (replayIntervalMs > 0) {
+            syncer.scheduleWithFixedDelay(this::replayQuietly, replayIntervalMs, replayIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        if (!journal.isEmpty()) {
+            System.err.println(journal.size() + " offline writes from an earlier run are waiting to be replayed");
+        }
+    }
+
+    /**
+     * Opens the snapshot at {@code moodtracker.snapshot.file} (default data/snapshot.db),
+     * synced every {@code moodtracker.snapshot.syncMs} (default one minute), with its
+     * journal alongside.
+     */
+    public static SnapshotMoodStore open(SyncableMoodStore remote) throws SQLException {
+        Path file = Paths.get(AppConfig.get("moodtracker.snapshot.file", "data/snapshot.db"));
+        return new SnapshotMoodStore(remote, new MappedFileMoodStore(file),
+                file.resolveSibling(file.getFileName() + ".sync"),
+                new MoodJournal(file.resolveSibling(file.getFileName() + ".journal")),
+                AppConfig.getLong("moodtracker.snapshot.syncMs", 60_000),
+                AppConfig.getLong("moodtracker.snapshot.replayMs", 5_000));
+    }
+
+    /**
+     * Registers a callback for each sync that changed the snapshot, called on the sync
+     * thread with the writes that were applied.
+     */
+    public void addSyncListener(Consumer<List<MoodWrite>> listener) {
+        syncListeners.add(listener);
+    }
+
+    public boolean isPrimed() {
+        return watermark > 0;
+    }
+
+    /**
+     * The number of writes journaled while the server was unreachable and not yet
+     * replayed.
+     */
+    public int getPendingWrites() {
+        return journal.size();
+    }
+
+    @Override
+    public void saveMoodEntry(LocalDate date, String mood, String gratitudeText, int rating) throws SQLException {
+        MoodWrite write = MoodWrite.upsert(date, mood, gratitudeText, rating);
+        writeThrough(Collections.singletonList(write), () -> remote.saveMoodEntry(date, mood, gratitudeText, rating), () -> {
+            // Offline, the snapshot is the best record of whether the day is taken
+            if (!local.getMoodsByDate(date).isEmpty()) {
+                throw new SQLIntegrityConstraintViolationException("An entry for today already exists.");
+            }
+        }, () -> local.upsertMoodEntry(date, mood, gratitudeText, rating));
+    }
+
+    @Override
+    public void upsertMoodEntry(LocalDate date, String mood, String gratitudeText, int rating) throws SQLException {
+        writeThrough(Collections.singletonList(MoodWrite.upsert(date, mood, gratitudeText, rating)),
+                () -> remote.upsertMoodEntry(date, mood, gratitudeText, rating), null,
+                () -> local.upsertMoodEntry(date, mood, gratitudeText, rating));
+    }
+
+    @Override
+    public void updateMoodEntry(LocalDate date, String mood, String gratitudeText, int rating) throws SQLException {
+        writeThrough(Collections.singletonList(MoodWrite.update(date, mood, gratitudeText, rating)),
+                () -> remote.updateMoodEntry(date, mood, gratitudeText, rating), null,
+                () -> local.updateMoodEntry(date, mood, gratitudeText, rating));
+    }
+
+    @Override
+    public void deleteMoodEntryByDate(LocalDate date) throws SQLException {
+        writeThrough(Collections.singletonList(MoodWrite.delete(date)), () -> remote.deleteMoodEntryByDate(date), null,
+                () -> local.deleteMoodEntryByDate(date));
+    }
+
+    @Override
+    public void applyBatch(List<MoodWrite> writes) throws SQLException {
+        writeThrough(writes, () -> remote.applyBatch(writes), null, () -> local.applyBatch(writes));
+    }
+
+    @Override
+    public List<Mood> getMoodsByDate(LocalDate date) throws SQLException {
+        return reader().getMoodsByDate(date);
+    }
+
+    @Override
+    public List<Mood> getAllEntries() throws SQLException {
+        return reader().getAllEntries();
+    }
+
+    @Override
+    public void streamEntries(Consumer<Mood> action) throws SQLException {
+        reader().streamEntries(action);
+    }
+
+    @Override
+    public List<Mood> getMoodsBetween(LocalDate start, LocalDate end) throws SQLException {
+        return reader().getMoodsBetween(start, end);
+    }
+
+    @Override
+    public List<Mood> getEntriesAfter(LocalDate after, int limit) throws SQLException {
+        return reader().getEntriesAfter(after, limit);
+    }
+
+    @Override
+    public LocalDate getEntryDateAt(int offset) throws SQLException {
+        return reader().getEntryDateAt(offset);
+    }
+
+    @Override
+    public String getGratitude(LocalDate date) throws SQLException {
+        return reader().getGratitude(date);
+    }
+
+    @Override
+    public int countEntries() throws SQLException {
+        return reader().countEntries();
+    }
+
+    @Override
+    public List<LocalDate> getDatesWithEntries() throws SQLException {
+        return reader().getDatesWithEntries();
+    }
+
+    @Override
+    public String getChangeMarker() throws SQLException {
+        return reader().getChangeMarker();
+    }
+
+    /**
+     * Replays the journal, then brings the snapshot up to date with the server. The
+     * first sync copies the whole history and drops any local day the server does not
+     * have.
+     *
+     * @return the number of days that changed in the snapshot
+     */
+    public int sync() throws SQLException {
+        synchronized (syncLock) {
+            // Local changes go out first, so the pull below cannot bring back what they replaced
+            replay();
+            long since = watermark;
+            synchronized (applyLock) {
+                writtenDuringSync.clear();
+            }
+            List<MoodWrite> changed = new ArrayList<>();
+            Set<LocalDate> seen = since == 0 ? new HashSet<>() : null;
+            Map<LocalDate, MoodWrite> batch = new LinkedHashMap<>();
+            long next;
+            try {
+                next = remote.streamChangesSince(since, write -> {
+                    if (seen != null) {
+                        seen.add(write.getDate());
+                    }
+                    batch.put(write.getDate(), write);
+                    if (batch.size() >= SYNC_BATCH) {
+                        try {
+                            apply(batch, changed);
+                        } catch (SQLException e) {
+                            throw new SyncFailure(e);
+                        }
+                    }
+                });
+            } catch (SyncFailure e) {
+                throw e.getCause();
+            }
+            apply(batch, changed);
+            if (seen != null) {
+                for (LocalDate date : local.getDatesWithEntries()) {
+                    if (!seen.contains(date)) {
+                        batch.put(date, MoodWrite.delete(date));
+                    }
+                }
+                apply(batch, changed);
+            }
+            writeWatermark(next);
+            watermark = next;
+            if (!changed.isEmpty()) {
+                List<MoodWrite> applied = Collections.unmodifiableList(changed);
+                for (Consumer<List<MoodWrite>> listener : syncListeners) {
+                    listener.accept(applied);
+                }
+            }
+            return changed.size();
+        }
+    }
+
+    /**
+     * Sends the journaled writes to the server, oldest first, and drops each batch from
+     * the journal once the server has it. Writes the server refuses are set aside. Stops
+     * at the first connection failure, leaving the rest journaled.
+     *
+     * @return the number of journaled writes replayed, including any set aside
+     */
+    public int replay() throws SQLException {
+        synchronized (syncLock) {
+            List<MoodWrite> pending = journal.pending();
+            if (pending.isEmpty()) {
+                return 0;
+            }
+            int replayed = 0;
+            try {
+                for (int from = 0; from < pending.size(); from += REPLAY_BATCH) {
+                    List<MoodWrite> chunk = pending.subList(from, Math.min(pending.size(), from + REPLAY_BATCH));
+                    // Net effect per day, in journal order; re-applying it is harmless if we crash before trimming
+                    Map<LocalDate, MoodWrite> net = new LinkedHashMap<>();
+                    for (MoodWrite write : chunk) {
+                        net.merge(write.getDate(), write, MoodWrite::coalesce);
+                    }
+                    List<MoodWrite> refused = replayBatch(new ArrayList<>(net.values()));
+                    if (!refused.isEmpty()) {
+                        // Before trimming, so a failure here leaves the batch to be replayed again
+                        restoreFromServer(refused, chunk.size());
+                        journal.setAside(refused);
+                    }
+                    journal.removeFirst(chunk.size());
+                    replayed += chunk.size();
+                }
+            } finally {
+                if (replayed > 0) {
+                    System.err.println("Replayed " + replayed + " offline writes to the server");
+                }
+            }
+            if (offline && journal.isEmpty()) {
+                offline = false;
+            }
+            return replayed;
+        }
+    }
+
+    // Returns the writes the server refused; throws if it cannot be reached
+    private List<MoodWrite> replayBatch(List<MoodWrite> writes) throws SQLException {
+        try {
+            remote.applyBatch(writes);
+            return Collections.emptyList();
+        } catch (SQLException e) {
+            if (DatabaseConnection.isConnectionFailure(e)) {
+                throw e;
+            }
+        }
+        // Something in the batch was refused: find out which write, one at a time
+        List<MoodWrite> refused = new ArrayList<>();
+        for (MoodWrite write : writes) {
+            try {
+                remote.applyBatch(Collections.singletonList(write));
+            } catch (SQLException e) {
+                if (DatabaseConnection.isConnectionFailure(e)) {
+                    throw e;
+                }
+                System.err.println("Server refused journaled " + write.getType() + " for " + write.getDate()
+                        + ", moving it aside: " + e.getMessage());
+                refused.add(write);
+            }
+        }
+        return refused;
+    }
+
+    // The snapshot already shows the refused writes; put back what the server holds for those days.
+    // The first replayedCount journal entries are the batch being replayed.
+    private void restoreFromServer(List<MoodWrite> refused, int replayedCount) throws SQLException {
+        List<MoodWrite> stored = new ArrayList<>(refused.size());
+        for (MoodWrite write : refused) {
+            List<Mood> moods = remote.getMoodsByDate(write.getDate());
+            if (moods.isEmpty()) {
+                stored.add(MoodWrite.delete(write.getDate()));
+            } else {
+                Mood mood = moods.get(0);
+                stored.add(MoodWrite.upsert(mood.getDate(), mood.getMood(), mood.getGratitude(), mood.getRating()));
+            }
+        }
+        List<MoodWrite> applied = new ArrayList<>(stored.size());
+        synchronized (applyLock) {
+            // A day journaled again since holds a newer write, which the replay will send in turn
+            Set<LocalDate> stillJournaled = new HashSet<>();
+            List<MoodWrite> journaled = journal.pending();
+            for (MoodWrite write : journaled.subList(replayedCount, journaled.size())) {
+                stillJournaled.add(write.getDate());
+            }
+            for (MoodWrite write : stored) {
+                if (!stillJournaled.contains(write.getDate())) {
+                    applied.add(write);
+                }
+            }
+            if (!applied.isEmpty()) {
+                local.applyBatch(applied);
+            }
+        }
+        if (!applied.isEmpty()) {
+            List<MoodWrite> changes = Collections.unmodifiableList(applied);
+            for (Consumer<List<MoodWrite>> listener : syncListeners) {
+                listener.accept(changes);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        syncer.shutdownNow();
+        try {
+            syncer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            try {
+                replay(); // Best effort; whatever is left is replayed on the next start
+            } catch (SQLException e) {
+                System.err.println(journal.size() + " offline writes stay journaled: " + e.getMessage());
+            }
+            journal.close();
+            local.close();
+        } finally {
+            remote.close();
+        }
+    }
+
+    private MoodStore reader() {
+        return watermark > 0 ? local : remote;
+    }
+
+    // Server first, then snapshot; if the server is unreachable, or earlier writes are still
+    // journaled, checks the write against the snapshot and journals it instead
+    private void writeThrough(List<MoodWrite> writes, Metrics.SqlAction remoteWrite, Metrics.SqlAction offlineCheck,
+                              Metrics.SqlAction localWrite) throws SQLException {
+        List<LocalDate> dates = new ArrayList<>(writes.size());
+        for (MoodWrite write : writes) {
+            dates.add(write.getDate());
+        }
+        if (journal.isEmpty()) {
+            try {
+                remoteWrite.run();
+                writeLocal(dates, localWrite);
+                return;
+            } catch (SQLException e) {
+                if (!DatabaseConnection.isConnectionFailure(e)) {
+                    throw e;
+                }
+                if (!offline) {
+                    offline = true;
+                    System.err.println("Server unreachable, journaling writes locally: " + e.getMessage());
+                }
+            }
+        }
+        synchronized (applyLock) {
+            if (offlineCheck != null) {
+                offlineCheck.run();
+            }
+            journal.append(writes);
+            writtenDuringSync.addAll(dates);
+            localWrite.run();
+        }
+    }
+
+    private void writeLocal(Collection<LocalDate> dates, Metrics.SqlAction write) throws SQLException {
+        synchronized (applyLock) {
+            writtenDuringSync.addAll(dates);
+            write.run();
+        }
+    }
+
+    // Applies the part of the batch that actually changes the snapshot and clears the batch
+    private void apply(Map<LocalDate, MoodWrite> batch, List<MoodWrite> changed) throws SQLException {
+        List<MoodWrite> writes = new ArrayList<>(batch.size());
+        synchronized (applyLock) {
+            for (MoodWrite write : batch.values()) {
+                // A day written here since the sync started already holds something newer than what we read
+                if (!writtenDuringSync.contains(write.getDate()) && changes(write)) {
+                    writes.add(write);
+                }
+            }
+            if (!writes.isEmpty()) {
+                local.applyBatch(writes);
+            }
+        }
+        changed.addAll(writes);
+        batch.clear();
+    }
+
+    private boolean changes(MoodWrite write) throws SQLException {
+        List<Mood> current = local.getMoodsByDate(write.getDate());
+        if (write.getType() == MoodWrite.Type.DELETE) {
+            return !current.isEmpty();
+        }
+        if (current.isEmpty()) {
+            return true;
+        }
+        Mood mood = current.get(0);
+        MoodType type = MoodType.fromName(write.getMood());
+        return mood.getMoodType() != type
+                || (type == null && !Objects.equals(mood.getMood(), write.getMood()))
+                || mood.getRating() != write.getRating()
+                || !Objects.equals(mood.getGratitude(), write.getGratitude());
+    }
+
+    private void replayQuietly() {
+        if (journal.isEmpty()) {
+            return;
+        }
+        try {
+            replay();
+        } catch (SQLException | RuntimeException e) {
+            // Still offline; the next attempt or sync tries again
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            Metrics.time("snapshot.sync", this::sync);
+            if (syncFailing) {
+                syncFailing = false;
+                System.err.println("Snapshot sync recovered");
+            }
+        } catch (SQLException | RuntimeException e) {
+            if (!syncFailing) {
+                syncFailing = true;
+                System.err.println("Snapshot sync failed, " + (isPrimed() ? "serving the local snapshot" : "no snapshot yet")
+                        + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static long readWatermark(Path file) {
+        try {
+            return Files.exists(file) ? Long.parseLong(new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim()) : 0;
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Ignoring unreadable snapshot watermark " + file + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private void writeWatermark(long value) throws SQLException {
+        try {
+            Path temp = watermarkFile.resolveSibling(watermarkFile.getFileName() + ".tmp");
+            Files.write(temp, Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+            Files.move(temp, watermarkFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new SQLException("Could not save snapshot watermark " + watermarkFile + ": " + e.getMessage(), e);
+        }
+    }
+
+    // Carries a snapshot write failure out of the change callback
+    private static final class SyncFailure extends RuntimeException {
+        SyncFailure(SQLException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized SQLException getCause() {
+            return (SQLException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package moodtracker;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.format.DateTimeFormatter;
+import java.time.format.TextStyle;
+import java.util.List;
+import java.util.Locale;
+
+public class StatisticsFrame extends JFrame {
+    private static final DateTimeFormatter WEEK_FORMAT = DateTimeFormatter.ofPattern("'Week of' yyyy-MM-dd");
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("MMMM yyyy", Locale.ENGLISH);
+
+    private final AsyncMoodRepository moodRepository = new AsyncMoodRepository();
+    private final JComboBox<MoodStatistics.Period> periodComboBox = new JComboBox<>(MoodStatistics.Period.values());
+    private final DefaultTableModel tableModel = new DefaultTableModel(
+            new Object[]{"Period", "Entries", "Avg Rating", "Most Common Mood", "Longest Streak"}, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+    private final JTextArea summaryTextArea = new JTextArea(9, 40);
+
+    public StatisticsFrame() {
+        // Frame settings
+        setTitle("Mood Statistics");
+        setSize(650, 500);
+        setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        setLocationRelativeTo(null);
+        setLayout(new BorderLayout());
+
+        // Period selector
+        JPanel controlPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        periodComboBox.setSelectedItem(MoodStatistics.Period.MONTH);
+        periodComboBox.addActionListener(e -> loadStatistics());
+        controlPanel.add(new JLabel("Group by:"));
+        controlPanel.add(periodComboBox);
+        JButton insightsButton = new JButton("Insights");
+        insightsButton.addActionListener(e -> showInsights(insightsButton));
+        controlPanel.add(insightsButton);
+        add(controlPanel, BorderLayout.NORTH);
+
+        // One row per period, newest first
+        add(new JScrollPane(new JTable(tableModel)), BorderLayout.CENTER);
+
+        // All-time summary
+        summaryTextArea.setEditable(false);
+        summaryTextArea.setFont(new Font("Arial", Font.PLAIN, 14));
+        summaryTextArea.setBackground(getBackground());
+        summaryTextArea.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
+        add(summaryTextArea, BorderLayout.SOUTH);
+
+        setVisible(true);
+        // Statistics come from the in-memory rollups, so recomputing after any write is cheap
+        MoodChangeBus.Subscription changes = MoodChangeBus.getShared().subscribeOnEdt(events -> loadStatistics());
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                changes.cancel();
+            }
+        });
+        loadStatistics();
+    }
+
+    private void loadStatistics() {
+        MoodStatistics.Period period = (MoodStatistics.Period) periodComboBox.getSelectedItem();
+        LocalDate today = LocalDate.now();
+        LocalDate from;
+        switch (period) {
+            case WEEK:
+                from = today.minusWeeks(11);
+                break;
+            case MONTH:
+                from = today.minusMonths(11);
+                break;
+            default:
+                from = today.minusYears(9);
+        }
+        summaryTextArea.setText("Loading...");
+        moodRepository.getStatisticsBy(period, from, today).whenCompleteAsync((buckets, error) -> {
+            if (period != periodComboBox.getSelectedItem()) {
+                return; // The user has already switched to another period
+            }
+            if (error != null) {
+                summaryTextArea.setText("");
+                JOptionPane.showMessageDialog(this, "Error loading statistics: " + AsyncMoodRepository.unwrap(error).getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            showBuckets(period, buckets);
+            showSummary(today);
+        }, AsyncMoodRepository.EDT);
+    }
+
+    private void showBuckets(MoodStatistics.Period period, List<MoodStatistics> buckets) {
+        tableModel.setRowCount(0);
+        for (int i = buckets.size() - 1; i >= 0; i--) {
+            MoodStatistics stats = buckets.get(i);
+            MoodType mostCommon = stats.getMostCommonMood();
+            tableModel.addRow(new Object[]{
+                    label(period, stats.getFrom()),
+                    stats.getEntryCount(),
+                    stats.getEntryCount() == 0 ? "-" : String.format("%.2f", stats.getAverageRating()),
+                    mostCommon == null ? "-" : mostCommon.getDisplayName(),
+                    stats.getLongestStreak()
+            });
+        }
+    }
+
+    // The index is loaded by now, so the all-time range is cheap to compute on the EDT
+    private void showSummary(LocalDate today) {
+        MoodIndex index = MoodIndex.getShared();
+        LocalDate first = index.getFirstDate();
+        if (first == null) {
+            summaryTextArea.setText("No entries yet.");
+            return;
+        }
+        MoodStatistics all = index.statistics(first, today);
+        StringBuilder text = new StringBuilder();
+        text.append("All time: ").append(all.getEntryCount()).append(" entries since ").append(first)
+                .append(String.format(", average rating %.2f%n", all.getAverageRating()));
+        text.append("Longest streak: ").append(all.getLongestStreak()).append(" days, current streak: ")
+                .append(all.getCurrentStreak()).append(" days\n");
+        for (MoodType type : MoodType.values()) {
+            int count = all.getMoodCount(type);
+            text.append(String.format("%-10s %5d  (%.0f%%)%n", type.getDisplayName() + ":", count,
+                    all.getEntryCount() == 0 ? 0.0 : 100.0 * count / all.getEntryCount()));
+        }
+        summaryTextArea.setText(text.toString());
+    }
+
+    private void showInsights(JButton insightsButton) {
+        insightsButton.setEnabled(false);
+        moodRepository.getInsights().whenCompleteAsync((insights, error) -> {
+            insightsButton.setEnabled(true);
+            if (!isDisplayable()) {
+                return; // Closed while the history was being analysed
+            }
+            if (error != null) {
+                JOptionPane.showMessageDialog(this, "Error analysing entries: " + AsyncMoodRepository.unwrap(error).getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            JTextArea insightsTextArea = new JTextArea(describe(insights), 24, 52);
+            insightsTextArea.setEditable(false);
+            insightsTextArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+            JOptionPane.showMessageDialog(this, new JScrollPane(insightsTextArea), "Mood Insights", JOptionPane.PLAIN_MESSAGE);
+        }, AsyncMoodRepository.EDT);
+    }
+
+    private static String describe(MoodInsights insights) {
+        if (insights.getEntryCount() == 0) {
+            return "No entries yet.";
+        }
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%d entries, average rating %.2f%n%n", insights.getEntryCount(), insights.getAverageRating()));
+        text.append("By weekday:\n");
+        for (DayOfWeek day : DayOfWeek.values()) {
+            appendRow(text, day.getDisplayName(TextStyle.FULL, Locale.ENGLISH), insights.getEntryCount(day),
+                    insights.getAverageRating(day), insights.getMostCommonMood(day));
+        }
+        text.append("\nBy month of the year:\n");
+        for (Month month : Month.values()) {
+            appendRow(text, month.getDisplayName(TextStyle.FULL, Locale.ENGLISH), insights.getEntryCount(month),
+                    insights.getAverageRating(month), insights.getMostCommonMood(month));
+        }
+        text.append("\nGratitude words on better days:\n");
+        appendWords(text, insights.getTopWords(10));
+        text.append("\nGratitude words on harder days:\n");
+        appendWords(text, insights.getBottomWords(10));
+        return text.toString();
+    }
+
+    private static void appendRow(StringBuilder text, String label, int entries, double averageRating, MoodType mostCommon) {
+        if (entries == 0) {
+            text.append(String.format("  %-10s %6s%n", label, "-"));
+            return;
+        }
+        text.append(String.format("  %-10s %6d  avg %.2f  mostly %s%n", label, entries, averageRating,
+                mostCommon == null ? "-" : mostCommon.getDisplayName()));
+    }
+
+    private static void appendWords(StringBuilder text, List<MoodInsights.WordInsight> words) {
+        if (words.isEmpty()) {
+            text.append("  (not enough entries yet)\n");
+        }
+        for (MoodInsights.WordInsight word : words) {
+            text.append(String.format("  %-16s %+.2f  (avg %.2f over %d entries)%n", word.getWord(),
+                    word.getRatingLift(), word.getAverageRating(), word.getEntryCount()));
+        }
+    }
+
+    private static String label(MoodStatistics.Period period, LocalDate start) {
+        switch (period) {
+            case WEEK:
+                return WEEK_FORMAT.format(start);
+            case MONTH:
+                return MONTH_FORMAT.format(start);
+            default:
+                return String.valueOf(start.getYear());
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package moodtracker;
+
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+/**
+ * A store that can list what changed since an earlier point, so a local copy such as
+ * {@link SnapshotMoodStore} can catch up by transferring only the changed rows.
+ */
+public interface SyncableMoodStore extends MoodStore {
+
+    /**
+     * Passes an UPSERT with the full entry for every row written, and a DELETE for
+     * every date deleted, since {@code sinceMillis} to {@code changes}. Pass 0 for the
+     * whole history (which reports no deletes). Changes close to the watermark may be
+     * reported again, so applying them must be idempotent.
+     *
+     * @return the watermark to pass on the next call
+     */
+    long streamChangesSince(long sinceMillis, Consumer<MoodWrite> changes) throws SQLException;
+}
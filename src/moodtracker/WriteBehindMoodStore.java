@@ -0,0 +1,397 @@
+package moodtracker;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind front for another store. Saves, updates and deletes are queued in
+ * memory, coalesced per date, and handed to {@link MoodStore#applyBatch} as one batch
+ * once {@code moodtracker.writeBehind.maxBatch} dates are pending or the oldest write
+ * has waited {@code moodtracker.writeBehind.flushMs}. A burst of edits therefore costs
+ * one transaction and one commit instead of one round trip each.
+ *
+ * <p>Reads see the caller's own writes: a point read of a queued date is answered from
+ * the queue, and range reads flush the queue first. A flush that fails because the
+ * store cannot be reached keeps its writes queued and retries them; if the queue grows
+ * past ten batches the writer flushes itself and sees the error. Any other failure is
+ * blamed on the writes themselves: the batch is retried one write at a time, writes
+ * the store rejects are dropped and kept aside ({@link #getRejectedWrites()}), and
+ * rejection listeners are told what is really stored for those dates so views can undo
+ * the write they were shown. {@link #close()} flushes whatever is left.
+ *
+ * <p>{@link #saveMoodEntry} is not queued: it must fail when the day already has an
+ * entry, which only the underlying store can decide, so it flushes and runs directly.
+ */
+public class WriteBehindMoodStore implements MoodStore {
+    private static final int MAX_REJECTED = 100;
+
+    private final MoodStore delegate;
+    private final int maxBatch;
+    private final long flushDelayMs;
+    private final ScheduledExecutorService flusher;
+    // Serialises flushes so batches reach the delegate in the order they were queued
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Object queueLock = new Object();
+    private final List<Consumer<List<MoodWrite>>> rejectionListeners = new CopyOnWriteArrayList<>();
+    // Guarded by queueLock; the most recent MAX_REJECTED writes the store refused
+    private final List<MoodWrite> rejected = new ArrayList<>();
+    private LinkedHashMap<LocalDate, MoodWrite> pending = new LinkedHashMap<>();
+    // The batch currently being applied, still visible to point reads
+    private Map<LocalDate, MoodWrite> inFlight = Collections.emptyMap();
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean closed;
+
+    public WriteBehindMoodStore(MoodStore delegate) {
+        this(delegate, AppConfig.getInt("moodtracker.writeBehind.maxBatch", 50),
+                AppConfig.getLong("moodtracker.writeBehind.flushMs", 200));
+    }
+
+    public WriteBehindMoodStore(MoodStore delegate, int maxBatch, long flushDelayMs) {
+        this.delegate = delegate;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.flushDelayMs = Math.max(0, flushDelayMs);
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mood-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void saveMoodEntry(LocalDate date, String mood, String gratitudeText, int rating) throws SQLException {
+        flushLock.lock();
+        try {
+            flush();
+            delegate.saveMoodEntry(date, mood, gratitudeText, rating);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public void upsertMoodEntry(LocalDate date, String mood, String gratitudeText, int rating) throws SQLException {
+        enqueue(MoodWrite.upsert(date, mood, gratitudeText, rating));
+    }
+
+    @Override
+    public void updateMoodEntry(LocalDate date, String mood, String gratitudeText, int rating) throws SQLException {
+        enqueue(MoodWrite.update(date, mood, gratitudeText, rating));
+    }
+
+    @Override
+    public void deleteMoodEntryByDate(LocalDate date) throws SQLException {
+        enqueue(MoodWrite.delete(date));
+    }
+
+    // Already a batch: drain the queue and pass it straight through, holding the flush lock so later writes stay later
+    @Override
+    public void applyBatch(List<MoodWrite> writes) throws SQLException {
+        flushLock.lock();
+        try {
+            flush();
+            delegate.applyBatch(writes);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Mood> getMoodsByDate(LocalDate date) throws SQLException {
+        MoodWrite queued = queued(date);
+        if (queued == null) {
+            return delegate.getMoodsByDate(date);
+        }
+        if (queued.getType() == MoodWrite.Type.UPDATE) {
+            flush(); // Whether the update applies depends on the stored row
+            return delegate.getMoodsByDate(date);
+        }
+        Mood mood = queued.toMood();
+        return mood == null ? Collections.<Mood>emptyList() : Collections.singletonList(mood);
+    }
+
+    @Override
+    public String getGratitude(LocalDate date) throws SQLException {
+        MoodWrite queued = queued(date);
+        if (queued == null) {
+            return delegate.getGratitude(date);
+        }
+        List<Mood> moods = getMoodsByDate(date);
+        return moods.isEmpty() ? null : moods.get(0).getGratitude();
+    }
+
+    @Override
+    public List<Mood> getAllEntries() throws SQLException {
+        flush();
+        return delegate.getAllEntries();
+    }
+
+    @Override
+    public void streamEntries(Consumer<Mood> action) throws SQLException {
+        flush();
+        delegate.streamEntries(action);
+    }
+
+    @Override
+    public List<Mood> getMoodsBetween(LocalDate start, LocalDate end) throws SQLException {
+        flush();
+        return delegate.getMoodsBetween(start, end);
+    }
+
+    @Override
+    public List<Mood> getEntriesAfter(LocalDate after, int limit) throws SQLException {
+        flush();
+        return delegate.getEntriesAfter(after, limit);
+    }
+
+    @Override
+    public LocalDate getEntryDateAt(int offset) throws SQLException {
+        flush();
+        return delegate.getEntryDateAt(offset);
+    }
+
+    @Override
+    public int countEntries() throws SQLException {
+        flush();
+        return delegate.countEntries();
+    }
+
+    @Override
+    public List<LocalDate> getDatesWithEntries() throws SQLException {
+        flush();
+        return delegate.getDatesWithEntries();
+    }
+
+    @Override
+    public String getChangeMarker() throws SQLException {
+        flush();
+        return delegate.getChangeMarker();
+    }
+
+    /**
+     * Applies every queued write to the underlying store now.
+     */
+    public void flush() throws SQLException {
+        flushLock.lock();
+        try {
+            List<MoodWrite> batch;
+            synchronized (queueLock) {
+                if (scheduledFlush != null) {
+                    scheduledFlush.cancel(false);
+                    scheduledFlush = null;
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                inFlight = pending;
+                pending = new LinkedHashMap<>();
+                batch = new ArrayList<>(inFlight.values());
+            }
+            try {
+                Metrics.run("writeBehind.flush", () -> delegate.applyBatch(batch));
+            } catch (SQLException e) {
+                if (DatabaseConnection.isConnectionFailure(e)) {
+                    requeue(batch);
+                    throw e;
+                }
+                applyOneByOne(batch);
+            } catch (RuntimeException e) {
+                applyOneByOne(batch);
+            } finally {
+                synchronized (queueLock) {
+                    inFlight = Collections.emptyMap();
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the underlying store refused for a reason other than a lost connection,
+     * oldest first, up to the last {@value #MAX_REJECTED}.
+     */
+    public List<MoodWrite> getRejectedWrites() {
+        synchronized (queueLock) {
+            return new ArrayList<>(rejected);
+        }
+    }
+
+    /**
+     * Called after a flush drops rejected writes, with the stored state of each of their
+     * dates: an upsert of the stored entry, or a delete when there is none. Dates with a
+     * newer write still queued are left out.
+     */
+    public void addRejectionListener(Consumer<List<MoodWrite>> listener) {
+        rejectionListeners.add(listener);
+    }
+
+    public int getPendingCount() {
+        synchronized (queueLock) {
+            return pending.size() + inFlight.size();
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        synchronized (queueLock) {
+            closed = true;
+        }
+        try {
+            flush();
+        } finally {
+            flusher.shutdownNow();
+            delegate.close();
+        }
+    }
+
+    private void enqueue(MoodWrite write) throws SQLException {
+        boolean full;
+        synchronized (queueLock) {
+            if (closed) {
+                throw new SQLException("Mood store is closed.");
+            }
+            full = pending.size() >= maxBatch * 10;
+            if (!full) {
+                pending.merge(write.getDate(), write, MoodWrite::coalesce);
+                if (pending.size() >= maxBatch) {
+                    if (scheduledFlush != null) {
+                        scheduledFlush.cancel(false);
+                    }
+                    scheduledFlush = flusher.schedule(this::backgroundFlush, 0, TimeUnit.MILLISECONDS);
+                } else {
+                    scheduleFlush();
+                }
+            }
+        }
+        if (full) {
+            // The store has been failing for a while; push back on the writer instead of growing without bound
+            flush();
+            enqueue(write);
+        }
+    }
+
+    // Caller holds flushLock; the batch failed as a whole, so find the writes to blame
+    private void applyOneByOne(List<MoodWrite> batch) throws SQLException {
+        List<MoodWrite> refused = new ArrayList<>();
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                MoodWrite write = batch.get(i);
+                try {
+                    delegate.applyBatch(Collections.singletonList(write));
+                } catch (SQLException e) {
+                    if (DatabaseConnection.isConnectionFailure(e)) {
+                        requeue(batch.subList(i, batch.size()));
+                        throw e;
+                    }
+                    reject(write, e, refused);
+                } catch (RuntimeException e) {
+                    reject(write, e, refused);
+                }
+            }
+        } finally {
+            if (!refused.isEmpty()) {
+                notifyRejected(refused);
+            }
+        }
+    }
+
+    private void reject(MoodWrite write, Exception cause, List<MoodWrite> refused) {
+        System.err.println("Dropping write-behind " + write.getType() + " for " + write.getDate()
+                + " the store refused: " + cause.getMessage());
+        refused.add(write);
+        synchronized (queueLock) {
+            rejected.add(write);
+            if (rejected.size() > MAX_REJECTED) {
+                rejected.remove(0);
+            }
+        }
+    }
+
+    private void notifyRejected(List<MoodWrite> refused) {
+        if (rejectionListeners.isEmpty()) {
+            return;
+        }
+        List<MoodWrite> stored = new ArrayList<>(refused.size());
+        for (MoodWrite write : refused) {
+            synchronized (queueLock) {
+                if (pending.containsKey(write.getDate())) {
+                    continue; // The newer write is what views show, and it is still on its way
+                }
+            }
+            try {
+                List<Mood> moods = delegate.getMoodsByDate(write.getDate());
+                if (moods.isEmpty()) {
+                    stored.add(MoodWrite.delete(write.getDate()));
+                } else {
+                    Mood mood = moods.get(0);
+                    stored.add(MoodWrite.upsert(mood.getDate(), mood.getMood(), mood.getGratitude(), mood.getRating()));
+                }
+            } catch (SQLException | RuntimeException e) {
+                System.err.println("Could not re-read " + write.getDate() + " after a rejected write: " + e.getMessage());
+            }
+        }
+        if (stored.isEmpty()) {
+            return;
+        }
+        for (Consumer<List<MoodWrite>> listener : rejectionListeners) {
+            try {
+                listener.accept(stored);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Puts writes that could not reach the store back ahead of anything queued meanwhile
+    private void requeue(List<MoodWrite> writes) {
+        synchronized (queueLock) {
+            LinkedHashMap<LocalDate, MoodWrite> restored = new LinkedHashMap<>();
+            for (MoodWrite write : writes) {
+                restored.put(write.getDate(), write);
+            }
+            for (MoodWrite write : pending.values()) {
+                restored.merge(write.getDate(), write, MoodWrite::coalesce);
+            }
+            pending = restored;
+            scheduleFlush();
+        }
+    }
+
+    // Caller holds queueLock
+    private void scheduleFlush() {
+        if (scheduledFlush == null && !flusher.isShutdown()) {
+            scheduledFlush = flusher.schedule(this::backgroundFlush, flushDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void backgroundFlush() {
+        synchronized (queueLock) {
+            scheduledFlush = null;
+        }
+        try {
+            flush();
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Write-behind flush failed, will retry: " + e.getMessage());
+        }
+    }
+
+    private MoodWrite queued(LocalDate date) {
+        synchronized (queueLock) {
+            MoodWrite flying = inFlight.get(date);
+            MoodWrite waiting = pending.get(date);
+            return waiting != null ? MoodWrite.coalesce(flying, waiting) : flying;
+        }
+    }
+}